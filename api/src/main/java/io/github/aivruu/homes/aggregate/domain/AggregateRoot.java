@@ -25,9 +25,18 @@ import org.jetbrains.annotations.NotNull;
  */
 public abstract class AggregateRoot {
   private final String id;
+  private volatile long version;
+  // The version the stored state has, or will have once the saves in progress are written.
+  private long storedVersion;
 
   protected AggregateRoot(final @NotNull String id) {
+    this(id, 0);
+  }
+
+  protected AggregateRoot(final @NotNull String id, final long version) {
     this.id = id;
+    this.version = version;
+    this.storedVersion = version;
   }
 
   /**
@@ -39,4 +48,96 @@ public abstract class AggregateRoot {
   public @NotNull String id() {
     return this.id;
   }
+
+  /**
+   * Returns this {@link AggregateRoot}'s version, which is increased by every mutation and stored with it,
+   * so infrastructures can tell whether a stored state is older than another one.
+   *
+   * @return The {@link AggregateRoot}'s version.
+   * @since 2.0.0
+   */
+  public long version() {
+    return this.version;
+  }
+
+  /**
+   * Increases this {@link AggregateRoot}'s version, must be called by subclasses for every mutation.
+   *
+   * @since 2.0.0
+   */
+  protected synchronized void incrementVersion() {
+    this.version++;
+  }
+
+  /**
+   * Sets this {@link AggregateRoot}'s version, used when its state is replaced by a stored one.
+   *
+   * @param version the stored state's version.
+   * @since 2.0.0
+   */
+  protected synchronized void version(final long version) {
+    this.version = version;
+    this.storedVersion = version;
+  }
+
+  /**
+   * Sets this {@link AggregateRoot}'s version without changing the expected stored version, used when its
+   * state is replaced by one that wasn't saved yet.
+   *
+   * @param version the not saved state's version.
+   * @since 2.0.0
+   */
+  protected synchronized void restoreVersion(final long version) {
+    this.version = version;
+  }
+
+  /**
+   * Returns the version this {@link AggregateRoot}'s stored state is expected to have, once the saves in
+   * progress are written.
+   *
+   * @return The expected stored version.
+   * @since 2.0.0
+   */
+  public synchronized long storedVersion() {
+    return this.storedVersion;
+  }
+
+  /**
+   * Checks if this {@link AggregateRoot} was mutated since it was read or last saved, including the saves
+   * in progress, so clean aggregate-roots don't need to be saved again.
+   *
+   * @return Whether this {@link AggregateRoot}'s version differs from the expected stored one.
+   * @since 2.0.0
+   */
+  public synchronized boolean isDirty() {
+    return this.version != this.storedVersion;
+  }
+
+  /**
+   * Marks the given version as being saved, must be called by subclasses while capturing the state to save.
+   *
+   * @param version the version being saved.
+   * @return The version the stored state must have for the save to be applied, if it has another one,
+   *     it was changed by another writer since this {@link AggregateRoot} was read.
+   * @since 2.0.0
+   */
+  protected synchronized long markSaving(final long version) {
+    final long expectedVersion = this.storedVersion;
+    this.storedVersion = version;
+    return expectedVersion;
+  }
+
+  /**
+   * Restores the expected stored version after a save of the given version wasn't applied.
+   *
+   * @param expectedVersion the version the stored state had to have for the save.
+   * @param version the version that wasn't saved.
+   * @since 2.0.0
+   */
+  public synchronized void cancelSaving(final long expectedVersion, final long version) {
+    // A later save already expects the not-saved version, so it will be rejected too.
+    if (this.storedVersion == version) {
+      this.storedVersion = expectedVersion;
+    }
+  }
 }
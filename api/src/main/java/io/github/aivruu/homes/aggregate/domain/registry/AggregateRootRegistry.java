@@ -17,10 +17,12 @@
 package io.github.aivruu.homes.aggregate.domain.registry;
 
 import io.github.aivruu.homes.aggregate.domain.AggregateRoot;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -40,6 +42,18 @@ public interface AggregateRootRegistry<A extends AggregateRoot> {
    */
   @Nullable A findInCache(final @NotNull String id);
 
+  /**
+   * Returns the {@link AggregateRoot} specified from the cache if found, using the {@link UUID}
+   * as key.
+   *
+   * @param id the aggregate-root's identifier.
+   * @return The {@link AggregateRoot} or {@code null} if not found in cache.
+   * @since 2.0.0
+   */
+  default @Nullable A findInCache(final @NotNull UUID id) {
+    return this.findInCache(id.toString());
+  }
+
   /**
    * Returns the {@link AggregateRoot} specified from the cache-repository if found,
    * otherwise it will search at infrastructure-repository by aggregate-root's information
@@ -51,6 +65,17 @@ public interface AggregateRootRegistry<A extends AggregateRoot> {
    */
   @Nullable A findInBoth(final @NotNull String id);
 
+  /**
+   * Returns a {@link CompletableFuture} with the {@link AggregateRoot} specified from the cache-repository
+   * if found, otherwise it will search at infrastructure-repository and, if found there, the aggregate-root
+   * will be kept for a while apart from the cache, without registering it.
+   *
+   * @param id the aggregate-root's identifier.
+   * @return A {@link CompletableFuture} with the {@link AggregateRoot} or {@code null} if not exists.
+   * @since 2.0.0
+   */
+  @NotNull CompletableFuture<@Nullable A> findInBothAsync(final @NotNull String id);
+
   /**
    * Returns the {@link AggregateRoot} specified from the infrastructure-repository
    * if found.
@@ -61,6 +86,16 @@ public interface AggregateRootRegistry<A extends AggregateRoot> {
    */
   @Nullable A findInInfrastructure(final @NotNull String id);
 
+  /**
+   * Returns a {@link CompletableFuture} with the {@link AggregateRoot} specified from the
+   * infrastructure-repository, without blocking the caller.
+   *
+   * @param id the aggregate-root's identifier.
+   * @return A {@link CompletableFuture} with the {@link AggregateRoot} or {@code null} if not found in infrastructure.
+   * @since 2.0.0
+   */
+  @NotNull CompletableFuture<@Nullable A> findAsync(final @NotNull String id);
+
   /**
    * Returns a {@link Collection} with the registry's currently cached {@link AggregateRoot}s.
    *
@@ -87,6 +122,17 @@ public interface AggregateRootRegistry<A extends AggregateRoot> {
    */
   boolean existsInCache(final @NotNull String id);
 
+  /**
+   * Checks if the aggregate-root specified is cached, using the {@link UUID} as key.
+   *
+   * @param id the aggregate-root's identifier.
+   * @return Whether the aggregate-root is cached.
+   * @since 2.0.0
+   */
+  default boolean existsInCache(final @NotNull UUID id) {
+    return this.existsInCache(id.toString());
+  }
+
   /**
    * Checks if the aggregate-root specified exists in the infrastructure.
    *
@@ -96,6 +142,58 @@ public interface AggregateRootRegistry<A extends AggregateRoot> {
    */
   boolean existsInInfrastructure(final @NotNull String id);
 
+  /**
+   * Checks if the aggregate-root specified exists in the infrastructure, without blocking the caller.
+   *
+   * @param id the aggregate-root's identifier.
+   * @return A {@link CompletableFuture} with a {@code boolean} value for aggregate-root existing in infrastructure.
+   * @since 2.0.0
+   */
+  @NotNull CompletableFuture<Boolean> existsAsync(final @NotNull String id);
+
+  /**
+   * Returns the aggregate-root specified if its save is still pending, so its latest state isn't stored yet.
+   *
+   * @param id the aggregate-root's identifier.
+   * @return The {@link AggregateRoot} being saved, or {@code null} if it has no pending save.
+   * @since 2.0.0
+   */
+  @Nullable A findPendingSave(final @NotNull String id);
+
+  /**
+   * Returns the stored version of the aggregate-root specified in the infrastructure.
+   *
+   * @param id the aggregate-root's identifier.
+   * @return A {@link CompletableFuture} with the stored version, or
+   *     {@link io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository#NOT_STORED_VERSION}
+   *     if it isn't stored.
+   * @see io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository#storedVersionAsync(String)
+   * @since 2.0.0
+   */
+  @NotNull CompletableFuture<Long> storedVersionAsync(final @NotNull String id);
+
+  /**
+   * Leases the aggregate-root specified in the infrastructure while the given version is saved.
+   *
+   * @param id the aggregate-root's identifier.
+   * @param version the version being saved.
+   * @param durationMillis the max milliseconds the lease is kept.
+   * @return A {@link CompletableFuture} with a {@code boolean} value for successful leasing.
+   * @see io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository#leaseAsync(String, long, long)
+   * @since 2.0.0
+   */
+  @NotNull CompletableFuture<Boolean> leaseAsync(final @NotNull String id, final long version, final long durationMillis);
+
+  /**
+   * Checks if the aggregate-root specified is leased for a version newer than the stored one.
+   *
+   * @param id the aggregate-root's identifier.
+   * @return A {@link CompletableFuture} with a {@code boolean} value for the aggregate-root being leased.
+   * @see io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository#isLeasedAsync(String)
+   * @since 2.0.0
+   */
+  @NotNull CompletableFuture<Boolean> isLeasedAsync(final @NotNull String id);
+
   /**
    * Stores the given {@link AggregateRoot} into cache.
    *
@@ -114,13 +212,25 @@ public interface AggregateRootRegistry<A extends AggregateRoot> {
    */
   @Nullable A unregister(final @NotNull String id);
 
+  /**
+   * Removes the {@link AggregateRoot} mapping from cache-repository and return
+   * its reference, using the {@link UUID} as key.
+   *
+   * @param id the aggregate-root's identifier.
+   * @return The {@link AggregateRoot} or {@code null} if no found.
+   * @since 2.0.0
+   */
+  default @Nullable A unregister(final @NotNull UUID id) {
+    return this.unregister(id.toString());
+  }
+
   /**
    * Saves the given {@link AggregateRoot} into the infrastructure and returns a
    * {@code boolean} result.
    *
    * @param aggregateRoot the {@link AggregateRoot} to save.
-   * @return Whether the aggregate-root was saved correctly.
+   * @return The {@link AggregateRootSaveResult} for the save.
    * @since 2.0.0
    */
-  @NotNull CompletableFuture<Boolean> save(final @NotNull A aggregateRoot);
+  @NotNull CompletableFuture<AggregateRootSaveResult> save(final @NotNull A aggregateRoot);
 }
@@ -21,6 +21,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.UUID;
 
 /**
  * This interface-contract defines the method that implementations must follow to
@@ -39,6 +40,17 @@ public interface AggregateRootRepository<A extends AggregateRoot> {
    */
   @Nullable A findSync(final @NotNull String id);
 
+  /**
+   * Returns the {@link AggregateRoot} requested if found, using the {@link UUID} as key.
+   *
+   * @param id the aggregate-root's id.
+   * @return A {@link AggregateRoot} or {@code null} if isn't cached.
+   * @since 2.0.0
+   */
+  default @Nullable A findSync(final @NotNull UUID id) {
+    return this.findSync(id.toString());
+  }
+
   /**
    * Returns the {@link Collection} with this repository's all {@link AggregateRoot}s.
    *
@@ -64,6 +76,17 @@ public interface AggregateRootRepository<A extends AggregateRoot> {
    */
   boolean existsSync(final @NotNull String id);
 
+  /**
+   * Checks if the {@link AggregateRoot} specified exists in repository, using the {@link UUID} as key.
+   *
+   * @param id the aggregate-root's id.
+   * @return Whether the {@link AggregateRoot} is cached.
+   * @since 2.0.0
+   */
+  default boolean existsSync(final @NotNull UUID id) {
+    return this.existsSync(id.toString());
+  }
+
   /**
    * Removes the {@link AggregateRoot} specified from repository.
    *
@@ -73,6 +96,17 @@ public interface AggregateRootRepository<A extends AggregateRoot> {
    */
   @Nullable A deleteSync(final @NotNull String id);
 
+  /**
+   * Removes the {@link AggregateRoot} specified from repository, using the {@link UUID} as key.
+   *
+   * @param id the aggregate-root's id.
+   * @return The removed {@link AggregateRoot} or {@code null} if isn't cached.
+   * @since 2.0.0
+   */
+  default @Nullable A deleteSync(final @NotNull UUID id) {
+    return this.deleteSync(id.toString());
+  }
+
   /**
    * Clears the repository from all {@link AggregateRoot}s.
    *
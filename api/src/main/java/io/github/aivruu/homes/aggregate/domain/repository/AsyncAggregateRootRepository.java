@@ -17,9 +17,11 @@
 package io.github.aivruu.homes.aggregate.domain.repository;
 
 import io.github.aivruu.homes.aggregate.domain.AggregateRoot;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -32,6 +34,13 @@ import java.util.concurrent.CompletableFuture;
  * @since 2.0.0
  */
 public interface AsyncAggregateRootRepository<A extends AggregateRoot> extends AggregateRootRepository<A> {
+  /**
+   * The version returned for aggregate-roots that aren't stored.
+   *
+   * @since 2.0.0
+   */
+  long NOT_STORED_VERSION = -1;
+
   @Override
   default @Nullable A findSync(final @NotNull String id) {
     return null;
@@ -77,13 +86,49 @@ public interface AsyncAggregateRootRepository<A extends AggregateRoot> extends A
   @NotNull CompletableFuture<Boolean> existsAsync(final @NotNull String id);
 
   /**
-   * Saves the given {@link AggregateRoot} into repository.
+   * Returns the stored version of the {@link AggregateRoot} specified, without loading all its information
+   * if the infrastructure allows it.
+   * <p>
+   * By default, the aggregate-root is loaded to read its version.
+   *
+   * @param id the aggregate-root's id.
+   * @return A {@link CompletableFuture} with the stored version, or {@link #NOT_STORED_VERSION} if it isn't stored.
+   * @since 2.0.0
+   */
+  default @NotNull CompletableFuture<Long> storedVersionAsync(final @NotNull String id) {
+    return this.findAsync(id).thenApply(aggregateRoot -> (aggregateRoot == null) ? NOT_STORED_VERSION : aggregateRoot.version());
+  }
+
+  /**
+   * Saves the given {@link AggregateRoot} into repository, only if the stored one still has the version
+   * expected by the aggregate-root, see {@link AggregateRoot#storedVersion()}.
    *
    * @param aggregateRoot the aggregate-root to save.
-   * @return A {@link CompletableFuture} with a {@code boolean} value for successful saving.
+   * @return A {@link CompletableFuture} with the {@link AggregateRootSaveResult}, which is a conflict if the
+   *     stored aggregate-root was changed by another writer.
+   * @since 2.0.0
+   */
+  @NotNull CompletableFuture<AggregateRootSaveResult> saveAsync(final @NotNull A aggregateRoot);
+
+  /**
+   * Saves all the given {@link AggregateRoot}s into repository, implementations may write them together
+   * using a single request to the infrastructure.
+   * <p>
+   * By default, every aggregate-root is saved using {@link #saveAsync(AggregateRoot)}.
+   *
+   * @param aggregateRoots the aggregate-roots to save.
+   * @return A {@link CompletableFuture} with the {@link AggregateRootSaveResult} of every aggregate-root,
+   *     in the same order they were given.
    * @since 2.0.0
    */
-  @NotNull CompletableFuture<Boolean> saveAsync(final @NotNull A aggregateRoot);
+  default @NotNull CompletableFuture<List<AggregateRootSaveResult>> saveAllAsync(final @NotNull List<A> aggregateRoots) {
+    final List<CompletableFuture<AggregateRootSaveResult>> futures = new ArrayList<>(aggregateRoots.size());
+    for (final A aggregateRoot : aggregateRoots) {
+      futures.add(this.saveAsync(aggregateRoot).exceptionally(exception -> AggregateRootSaveResult.error()));
+    }
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+      .thenApply(unused -> futures.stream().map(CompletableFuture::join).toList());
+  }
 
   /**
    * Deletes the {@link AggregateRoot} specified from repository.
@@ -93,4 +138,32 @@ public interface AsyncAggregateRootRepository<A extends AggregateRoot> extends A
    * @since 2.0.0
    */
   @NotNull CompletableFuture<Boolean> deleteAsync(final @NotNull String id);
+
+  /**
+   * Marks the specified {@link AggregateRoot} as being saved with the given version, so other servers
+   * loading it can wait for that version instead of reading an older one. The lease is ignored once the
+   * stored version reaches the leased one, or after the given duration.
+   * <p>
+   * By default, nothing is leased, as infrastructures aren't shared between servers.
+   *
+   * @param id the aggregate-root's id.
+   * @param version the version being saved.
+   * @param durationMillis the max milliseconds the lease is kept.
+   * @return A {@link CompletableFuture} with a {@code boolean} value for successful leasing.
+   * @since 2.0.0
+   */
+  default @NotNull CompletableFuture<Boolean> leaseAsync(final @NotNull String id, final long version, final long durationMillis) {
+    return CompletableFuture.completedFuture(true);
+  }
+
+  /**
+   * Checks if the specified {@link AggregateRoot} has a lease for a version newer than the stored one.
+   *
+   * @param id the aggregate-root's id.
+   * @return A {@link CompletableFuture} with a {@code boolean} value for the aggregate-root being leased.
+   * @since 2.0.0
+   */
+  default @NotNull CompletableFuture<Boolean> isLeasedAsync(final @NotNull String id) {
+    return CompletableFuture.completedFuture(false);
+  }
 }
@@ -20,6 +20,7 @@ import io.github.aivruu.homes.aggregate.domain.registry.AggregateRootRegistry;
 import io.github.aivruu.homes.aggregate.domain.repository.AggregateRootRepository;
 import io.github.aivruu.homes.home.application.HomeCreatorService;
 import io.github.aivruu.homes.home.application.HomePositionUpdater;
+import io.github.aivruu.homes.persistence.application.AggregateRootWriteBehindQueue;
 import io.github.aivruu.homes.player.application.PlayerHomeController;
 import io.github.aivruu.homes.player.application.PlayerManagerService;
 import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
@@ -43,12 +44,24 @@ public interface Homes {
   /**
    * Returns the {@link AggregateRootRegistry} implementation for {@link PlayerAggregateRoot}
    * global-registry management.
+   * <p>
+   * Offline players' information should be requested through its asynchronous methods, such as
+   * {@link AggregateRootRegistry#findInBothAsync(String)}, to avoid blocking server's threads.
    *
    * @return The {@link AggregateRootRegistry} implementation for {@link PlayerAggregateRoot}.
    * @since 2.0.0
    */
   @NotNull AggregateRootRegistry<PlayerAggregateRoot> playerRegistry();
 
+  /**
+   * Returns the {@link AggregateRootWriteBehindQueue} used for {@link PlayerAggregateRoot}
+   * saving into infrastructure.
+   *
+   * @return The {@link AggregateRootWriteBehindQueue} for {@link PlayerAggregateRoot}.
+   * @since 2.0.0
+   */
+  @NotNull AggregateRootWriteBehindQueue<PlayerAggregateRoot> playerSaveQueue();
+
   /**
    * Returns the {@link HomeCreatorService} instance for {@link io.github.aivruu.homes.home.domain.HomeModelEntity} creation
    * and deletion handling.
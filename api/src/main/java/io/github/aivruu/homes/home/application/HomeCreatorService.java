@@ -54,12 +54,12 @@ public final class HomeCreatorService {
    * @param player the player who is creating the home.
    * @param homeId the home's id.
    * @return Whether the home was created correctly and doesn't exist previously.
-   * @see PlayerManagerService#playerAggregateRootOf(String)
+   * @see PlayerManagerService#playerAggregateRootOf(java.util.UUID)
    * @see PlayerAggregateRoot#home(String)
    * @since 2.0.0
    */
   public boolean create(final @NotNull Player player, final @NotNull String homeId) {
-    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId().toString());
+    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId());
     if (playerAggregateRoot == null) {
       return false;
     }
@@ -59,14 +59,14 @@ public final class HomePositionUpdater {
    * <li>{@link ValueObjectMutationResult#unchanged()} if the position given is the same, or event is cancelled. {@link ValueObjectMutationResult#result()} is {@code null}.</li>
    * <li>{@link ValueObjectMutationResult#error()} if the home doesn't exist. {@link ValueObjectMutationResult#result()} is {@code null}.</li>
    * </ul>
-   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findInCache(String)
+   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findInCache(java.util.UUID)
    * @since 1.0.0
    */
   public @NotNull ValueObjectMutationResult<@Nullable HomePositionValueObject> updatePosition(
     final @NotNull Player player,
     final @NotNull String homeId
   ) {
-    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId().toString());
+    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId());
     if (playerAggregateRoot == null) {
       return ValueObjectMutationResult.error();
     }
@@ -89,7 +89,7 @@ public final class HomePositionUpdater {
     if (homePositionUpdateEvent.isCancelled()) {
       return ValueObjectMutationResult.unchanged();
     }
-    homeModel.position(newPosition);
+    playerAggregateRoot.homePosition(homeId, newPosition);
     return ValueObjectMutationResult.mutated(newPosition);
   }
 }
@@ -69,4 +69,15 @@ public final class HomeModelEntity {
   public void position(final @NotNull HomePositionValueObject position) {
     this.position = position;
   }
+
+  /**
+   * Returns a copy of this home, which shares its immutable {@link HomePositionValueObject} and isn't
+   * affected by next position changes.
+   *
+   * @return A new {@link HomeModelEntity} with this home's current state.
+   * @since 2.0.0
+   */
+  public @NotNull HomeModelEntity copy() {
+    return new HomeModelEntity(this.id, this.position);
+  }
 }
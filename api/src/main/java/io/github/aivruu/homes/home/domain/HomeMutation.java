@@ -0,0 +1,67 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.home.domain;
+
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents a single change applied to a player's homes, recorded by the
+ * {@link io.github.aivruu.homes.player.domain.PlayerAggregateRoot} so infrastructures are able to
+ * persist only the changed homes instead of the whole aggregate-root.
+ *
+ * @since 2.0.0
+ */
+public sealed interface HomeMutation {
+  /**
+   * Returns the id of the home affected by this mutation.
+   *
+   * @return The home's id.
+   * @since 2.0.0
+   */
+  @NotNull String homeId();
+
+  /**
+   * The given home was added to the player's homes.
+   *
+   * @param homeModel the added {@link HomeModelEntity}.
+   * @since 2.0.0
+   */
+  record Added(@NotNull HomeModelEntity homeModel) implements HomeMutation {
+    @Override
+    public @NotNull String homeId() {
+      return this.homeModel.id();
+    }
+  }
+
+  /**
+   * The specified home was removed from the player's homes.
+   *
+   * @param homeId the removed home's id.
+   * @since 2.0.0
+   */
+  record Removed(@NotNull String homeId) implements HomeMutation {}
+
+  /**
+   * The specified home's position was changed.
+   *
+   * @param homeId the home's id.
+   * @param position the home's new {@link HomePositionValueObject}.
+   * @since 2.0.0
+   */
+  record PositionChanged(@NotNull String homeId, @NotNull HomePositionValueObject position) implements HomeMutation {}
+}
@@ -0,0 +1,188 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.application;
+
+import io.github.aivruu.homes.aggregate.domain.AggregateRoot;
+import io.github.aivruu.homes.aggregate.domain.registry.AggregateRootRegistry;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import net.kyori.adventure.text.logger.slf4j.ComponentLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Periodically saves the cached {@link AggregateRoot}s that were changed since they were loaded or last saved,
+ * so a crash only loses the changes made since the last cycle.
+ * <p>
+ * Every cycle starts after the configured interval plus a random jitter, and its writes are spread over
+ * the interval's half without exceeding the configured writes-per-second, so the infrastructure doesn't
+ * receive all of them at the same time.
+ *
+ * @param <A> an aggregate-root type.
+ * @since 2.0.0
+ */
+public final class AggregateRootAutosaveScheduler<A extends AggregateRoot> {
+  // Servers started together don't autosave at the same time.
+  private static final double JITTER_FRACTION = 0.1;
+  private final ComponentLogger logger;
+  private final AggregateRootRegistry<A> aggregateRootRegistry;
+  private final long intervalMillis;
+  private final int maxWritesPerSecond;
+  private volatile ScheduledExecutorService scheduler;
+
+  /**
+   * Creates a new {@link AggregateRootAutosaveScheduler} with the provided parameters.
+   *
+   * @param logger the logger used to report every cycle's writes.
+   * @param aggregateRootRegistry the {@link AggregateRootRegistry} whose cached aggregate-roots are saved.
+   * @param intervalMillis the milliseconds between each cycle, if zero or negative, autosaving is disabled.
+   * @param maxWritesPerSecond the max amount of aggregate-roots saved per second, if zero or negative, writes
+   *     are only spread over the interval.
+   * @since 2.0.0
+   */
+  public AggregateRootAutosaveScheduler(
+    final @NotNull ComponentLogger logger,
+    final @NotNull AggregateRootRegistry<A> aggregateRootRegistry,
+    final long intervalMillis,
+    final int maxWritesPerSecond) {
+    this.logger = logger;
+    this.aggregateRootRegistry = aggregateRootRegistry;
+    this.intervalMillis = intervalMillis;
+    this.maxWritesPerSecond = maxWritesPerSecond;
+  }
+
+  /**
+   * Starts the autosave cycles.
+   *
+   * @since 2.0.0
+   */
+  public void start() {
+    if (this.scheduler != null || this.intervalMillis <= 0) {
+      return;
+    }
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "Homes-Autosave");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduleNextCycle();
+  }
+
+  private void scheduleNextCycle() {
+    final ScheduledExecutorService scheduler = this.scheduler;
+    if (scheduler == null) {
+      return;
+    }
+    final long jitterMillis = (long) (this.intervalMillis * JITTER_FRACTION);
+    final long delayMillis = this.intervalMillis + ThreadLocalRandom.current().nextLong(-jitterMillis, jitterMillis + 1);
+    try {
+      scheduler.schedule(this::cycle, delayMillis, TimeUnit.MILLISECONDS);
+    } catch (final RejectedExecutionException ignored) {
+      // The scheduler was closed meanwhile.
+    }
+  }
+
+  private void cycle() {
+    try {
+      final List<A> dirtyAggregateRoots = new ArrayList<>();
+      for (final A aggregateRoot : this.aggregateRootRegistry.findAllInCache()) {
+        if (aggregateRoot.isDirty()) {
+          dirtyAggregateRoots.add(aggregateRoot);
+        }
+      }
+      if (!dirtyAggregateRoots.isEmpty()) {
+        this.save(dirtyAggregateRoots);
+      }
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (final RuntimeException exception) {
+      this.logger.error("An error occurred during the aggregate-roots autosave.", exception);
+    }
+    this.scheduleNextCycle();
+  }
+
+  private void save(final @NotNull List<A> dirtyAggregateRoots) throws InterruptedException {
+    final long spreadPauseMillis = (this.intervalMillis / 2) / dirtyAggregateRoots.size();
+    final long pauseMillis = (this.maxWritesPerSecond > 0)
+      ? Math.max(spreadPauseMillis, 1000L / this.maxWritesPerSecond)
+      : spreadPauseMillis;
+    final List<CompletableFuture<AggregateRootSaveResult>> saves = new ArrayList<>(dirtyAggregateRoots.size());
+    for (final A aggregateRoot : dirtyAggregateRoots) {
+      if (!saves.isEmpty()) {
+        Thread.sleep(pauseMillis);
+      }
+      // It could have been saved meanwhile, i.e. when unloaded.
+      if (!aggregateRoot.isDirty()) continue;
+      saves.add(this.aggregateRootRegistry.save(aggregateRoot).exceptionally(exception -> AggregateRootSaveResult.error()));
+    }
+    // Bounded and interruptible, so a save that never completes can't hang the cycle nor the scheduler's closing.
+    try {
+      CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).get(this.intervalMillis, TimeUnit.MILLISECONDS);
+    } catch (final TimeoutException exception) {
+      // The unfinished saves keep running, their aggregate-roots are retried by the next cycle if still dirty.
+    } catch (final ExecutionException exception) {
+      // Unreachable, every failed save is already completed as an error.
+    }
+    int saved = 0;
+    int conflicts = 0;
+    int pending = 0;
+    for (final CompletableFuture<AggregateRootSaveResult> save : saves) {
+      final AggregateRootSaveResult result = save.getNow(null);
+      if (result == null) {
+        pending++;
+      } else if (result.wasSaved()) {
+        saved++;
+      } else if (result.wasConflict()) {
+        conflicts++;
+      }
+    }
+    this.logger.info("Autosaved {} changed aggregate-roots, {} conflicted and {} failed.", saved, conflicts, saves.size() - saved - conflicts - pending);
+    if (pending > 0) {
+      this.logger.warn("{} autosaves didn't complete within the autosave interval.", pending);
+    }
+  }
+
+  /**
+   * Stops the autosave cycles, interrupting the current one.
+   *
+   * @since 2.0.0
+   */
+  public void close() {
+    final ScheduledExecutorService scheduler = this.scheduler;
+    this.scheduler = null;
+    if (scheduler == null) {
+      return;
+    }
+    // Pending aggregate-roots are saved by the shutdown's final save.
+    scheduler.shutdownNow();
+    try {
+      scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,268 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.application;
+
+import io.github.aivruu.homes.aggregate.domain.AggregateRoot;
+import io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A write-behind stage for {@link AggregateRoot}s saving, which keeps the pending saves per aggregate-root's id,
+ * and flushes them to the {@link AsyncAggregateRootRepository} in batches at a fixed interval.
+ * <p>
+ * If the same aggregate-root is enqueued several times before being flushed, only its latest state is written,
+ * and all the callers receive the same {@link CompletableFuture}. Aggregate-roots are found through
+ * {@link #findPending(String)} until they're written, so they can be read back before being stored.
+ *
+ * @param <A> an aggregate-root type.
+ * @since 2.0.0
+ */
+public final class AggregateRootWriteBehindQueue<A extends AggregateRoot> {
+  private final Map<String, PendingSave<A>> pendingSaves = new ConcurrentHashMap<>();
+  // Saves handed to the repository and not completed yet, in their order, as an unthrottled flush may hand a save
+  // over while a previous one for the same id is still being written. Lists are replaced instead of mutated.
+  private final Map<String, List<PendingSave<A>>> writingSaves = new ConcurrentHashMap<>();
+  private final Queue<String> pendingIds = new ConcurrentLinkedQueue<>();
+  private final AsyncAggregateRootRepository<A> repository;
+  private final long flushIntervalMillis;
+  private final int batchSize;
+  private volatile ScheduledExecutorService scheduler;
+  private volatile boolean closed;
+
+  /**
+   * Creates a new {@link AggregateRootWriteBehindQueue} with the provided parameters.
+   *
+   * @param repository the {@link AsyncAggregateRootRepository} used to write the aggregate-roots.
+   * @param flushIntervalMillis the milliseconds between each flush, if zero or negative, saves are written directly.
+   * @param batchSize the max amount of aggregate-roots written at the same time.
+   * @since 2.0.0
+   */
+  public AggregateRootWriteBehindQueue(
+    final @NotNull AsyncAggregateRootRepository<A> repository,
+    final long flushIntervalMillis,
+    final int batchSize) {
+    this.repository = repository;
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  /**
+   * Starts the scheduled flushing for this queue.
+   *
+   * @since 2.0.0
+   */
+  public void start() {
+    if (this.scheduler != null || this.flushIntervalMillis <= 0) {
+      return;
+    }
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "Homes-Write-Behind-Flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler.scheduleWithFixedDelay(this::flush, this.flushIntervalMillis, this.flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Enqueues the given {@link AggregateRoot} for saving, replacing any pending state for the same id.
+   *
+   * @param aggregateRoot the aggregate-root to save.
+   * @return A {@link CompletableFuture} with the {@link AggregateRootSaveResult}, shared by all the callers
+   *     whose saves were coalesced.
+   * @since 2.0.0
+   */
+  public @NotNull CompletableFuture<AggregateRootSaveResult> enqueue(final @NotNull A aggregateRoot) {
+    if (this.scheduler == null) {
+      return this.repository.saveAsync(aggregateRoot);
+    }
+    final CompletableFuture<AggregateRootSaveResult> future = this.pendingSaves.compute(aggregateRoot.id(), (id, pendingSave) -> {
+      if (pendingSave == null) {
+        this.pendingIds.offer(id);
+        return new PendingSave<>(aggregateRoot);
+      }
+      pendingSave.aggregateRoot = aggregateRoot;
+      return pendingSave;
+    }).future;
+    // Closed meanwhile, so the save may have been enqueued after the last flush, which would never write it.
+    if (this.closed) {
+      this.flush(false);
+    }
+    return future;
+  }
+
+  /**
+   * Returns the latest enqueued state of the specified aggregate-root, if it wasn't written yet.
+   *
+   * @param id the aggregate-root's id.
+   * @return The pending aggregate-root, or {@code null} if there's no pending save for it.
+   * @since 2.0.0
+   */
+  public @Nullable A findPending(final @NotNull String id) {
+    // Checked in the opposite order they're moved, so a save being handed to the repository is never missed.
+    final PendingSave<A> pendingSave = this.pendingSaves.get(id);
+    if (pendingSave != null) {
+      return pendingSave.aggregateRoot;
+    }
+    final List<PendingSave<A>> writingSaves = this.writingSaves.get(id);
+    return (writingSaves == null) ? null : writingSaves.get(writingSaves.size() - 1).aggregateRoot;
+  }
+
+  /**
+   * Writes all the pending aggregate-roots, in batches of the configured size, and waits for them.
+   *
+   * @since 2.0.0
+   */
+  public void flush() {
+    this.flush(true);
+  }
+
+  private void flush(final boolean throttled) {
+    List<PendingSave<A>> batch = new ArrayList<>(this.batchSize);
+    String id;
+    while ((id = this.pendingIds.poll()) != null) {
+      final PendingSave<A> pendingSave = this.pendingSaves.get(id);
+      if (pendingSave == null) {
+        continue;
+      }
+      this.writingSaves.compute(id, (ignored, writingSaves) -> {
+        if (writingSaves == null) {
+          return List.of(pendingSave);
+        }
+        final List<PendingSave<A>> appendedSaves = new ArrayList<>(writingSaves);
+        appendedSaves.add(pendingSave);
+        return List.copyOf(appendedSaves);
+      });
+      this.pendingSaves.remove(id, pendingSave);
+      batch.add(pendingSave);
+      if (batch.size() >= this.batchSize) {
+        this.write(batch, throttled);
+        batch = new ArrayList<>(this.batchSize);
+      }
+    }
+    if (!batch.isEmpty()) {
+      this.write(batch, throttled);
+    }
+  }
+
+  private void write(final @NotNull List<PendingSave<A>> batch, final boolean throttled) {
+    final List<A> aggregateRoots = new ArrayList<>(batch.size());
+    for (final PendingSave<A> pendingSave : batch) {
+      aggregateRoots.add(pendingSave.aggregateRoot);
+    }
+    // The whole batch is handed to the repository, so it can be written with a single request.
+    final CompletableFuture<List<AggregateRootSaveResult>> future = this.repository.saveAllAsync(aggregateRoots)
+      .whenComplete((results, exception) -> {
+        for (int i = 0; i < batch.size(); i++) {
+          final PendingSave<A> pendingSave = batch.get(i);
+          this.writingSaves.computeIfPresent(pendingSave.aggregateRoot.id(), (id, writingSaves) -> {
+            final List<PendingSave<A>> remainingSaves = new ArrayList<>(writingSaves);
+            remainingSaves.remove(pendingSave);
+            return remainingSaves.isEmpty() ? null : List.copyOf(remainingSaves);
+          });
+          if (exception != null) {
+            pendingSave.future.completeExceptionally(exception);
+          } else {
+            pendingSave.future.complete(results.get(i));
+          }
+        }
+      });
+    if (!throttled) {
+      return;
+    }
+    // Wait for the batch before writing the next one, so the infrastructure isn't flooded.
+    try {
+      future.join();
+    } catch (final RuntimeException ignored) {
+      // Failures were already forwarded to the pending-saves' futures.
+    }
+  }
+
+  /**
+   * Returns the amount of aggregate-roots waiting to be written.
+   *
+   * @return The queue's depth.
+   * @since 2.0.0
+   */
+  public int pendingCount() {
+    return this.pendingSaves.size();
+  }
+
+  /**
+   * Stops the scheduled flushing and starts writing all the pending aggregate-roots at once, without
+   * waiting for them, their saves' futures are completed once written.
+   *
+   * @return The {@link FlushedSave}s of every aggregate-root not written yet, including the ones that were
+   *     already being written by the scheduled flushing.
+   * @since 2.0.0
+   */
+  public @NotNull List<FlushedSave<A>> close() {
+    final ScheduledExecutorService scheduler = this.scheduler;
+    // Further saves are written directly once the queue is closed, and the ones racing with it are flushed by
+    // themselves.
+    this.closed = true;
+    this.scheduler = null;
+    if (scheduler != null) {
+      scheduler.shutdown();
+      try {
+        scheduler.awaitTermination(this.flushIntervalMillis, TimeUnit.MILLISECONDS);
+      } catch (final InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    // Callers wait for the saves' futures as long as they can, instead of each batch sequentially.
+    this.flush(false);
+    final List<FlushedSave<A>> flushedSaves = new ArrayList<>(this.writingSaves.size());
+    for (final List<PendingSave<A>> writingSaves : this.writingSaves.values()) {
+      for (final PendingSave<A> writingSave : writingSaves) {
+        flushedSaves.add(new FlushedSave<>(writingSave.aggregateRoot, writingSave.future));
+      }
+    }
+    return flushedSaves;
+  }
+
+  /**
+   * A save being written when the queue was closed.
+   *
+   * @param aggregateRoot the aggregate-root being written.
+   * @param result a {@link CompletableFuture} with the save's {@link AggregateRootSaveResult}.
+   * @param <A> an aggregate-root type.
+   * @since 2.0.0
+   */
+  public record FlushedSave<A extends AggregateRoot>(@NotNull A aggregateRoot, @NotNull CompletableFuture<AggregateRootSaveResult> result) {}
+
+  private static final class PendingSave<A extends AggregateRoot> {
+    private final CompletableFuture<AggregateRootSaveResult> future = new CompletableFuture<>();
+    private volatile A aggregateRoot;
+
+    private PendingSave(final @NotNull A aggregateRoot) {
+      this.aggregateRoot = aggregateRoot;
+    }
+  }
+}
@@ -0,0 +1,6 @@
+/**
+ * Provides application-level persistence stages placed between registries and infrastructure-repositories.
+ *
+ * @since 2.0.0
+ */
+package io.github.aivruu.homes.persistence.application;
\ No newline at end of file
@@ -18,9 +18,13 @@ package io.github.aivruu.homes.persistence.domain;
 
 import io.github.aivruu.homes.aggregate.domain.AggregateRoot;
 import io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository;
+import io.github.aivruu.homes.persistence.infrastructure.AggregateRootKeyedExecutor;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * An infrastructure aggregate-root repository model.
@@ -30,11 +34,40 @@ import java.util.concurrent.Executor;
  */
 public abstract class InfrastructureAggregateRootRepository<A extends AggregateRoot> implements AsyncAggregateRootRepository<A> {
   protected final Executor executor;
+  private final AggregateRootKeyedExecutor keyedExecutor = new AggregateRootKeyedExecutor();
 
   protected InfrastructureAggregateRootRepository(final @NotNull Executor executor) {
     this.executor = executor;
   }
 
+  /**
+   * Runs the given operation after the previous ones submitted for the same aggregate-root's id.
+   *
+   * @param id the aggregate-root's id.
+   * @param operation a supplier that starts the operation and returns its {@link CompletableFuture}.
+   * @param <T> a type-parameter representing the operation's result type.
+   * @return A {@link CompletableFuture} completed with the operation's result.
+   * @see AggregateRootKeyedExecutor
+   * @since 2.0.0
+   */
+  protected <T> @NotNull CompletableFuture<T> ordered(final @NotNull String id, final @NotNull Supplier<CompletableFuture<T>> operation) {
+    return this.keyedExecutor.submit(id, operation);
+  }
+
+  /**
+   * Runs the given operation after the previous ones submitted for any of the given aggregate-roots' ids.
+   *
+   * @param ids the aggregate-roots' ids.
+   * @param operation a supplier that starts the operation and returns its {@link CompletableFuture}.
+   * @param <T> a type-parameter representing the operation's result type.
+   * @return A {@link CompletableFuture} completed with the operation's result.
+   * @see AggregateRootKeyedExecutor
+   * @since 2.0.0
+   */
+  protected <T> @NotNull CompletableFuture<T> ordered(final @NotNull Collection<String> ids, final @NotNull Supplier<CompletableFuture<T>> operation) {
+    return this.keyedExecutor.submit(ids, operation);
+  }
+
   /**
    * Executes this repository its start-up logic.
    *
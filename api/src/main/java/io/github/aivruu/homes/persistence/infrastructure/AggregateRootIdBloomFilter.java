@@ -0,0 +1,108 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter for the aggregate-roots' ids stored at an infrastructure, used to
+ * know without any I/O when an aggregate-root is guaranteed to not be stored yet.
+ * <p>
+ * Ids can't be removed from the filter, so deleted aggregate-roots are reported as possibly stored.
+ *
+ * @since 2.0.0
+ */
+public final class AggregateRootIdBloomFilter {
+  /** The minimum amount of ids that a filter is sized for. */
+  public static final int MIN_EXPECTED_IDS = 1 << 16;
+  private static final double FALSE_POSITIVE_RATE = 0.01D;
+  private final AtomicLongArray words;
+  private final int bits;
+  private final int hashFunctions;
+
+  /**
+   * Creates a new {@link AggregateRootIdBloomFilter} sized for the given amount of ids.
+   *
+   * @param storedIds the amount of ids currently stored, the filter is sized for the double of them.
+   * @since 2.0.0
+   */
+  public AggregateRootIdBloomFilter(final long storedIds) {
+    final long expectedIds = Math.max(MIN_EXPECTED_IDS, storedIds * 2);
+    final double ln2 = Math.log(2);
+    final long optimalBits = (long) Math.ceil(-expectedIds * Math.log(FALSE_POSITIVE_RATE) / (ln2 * ln2));
+    this.bits = (int) Math.min(Integer.MAX_VALUE - Long.SIZE, optimalBits);
+    this.words = new AtomicLongArray((this.bits + Long.SIZE - 1) >>> 6);
+    this.hashFunctions = Math.max(1, (int) Math.round((double) this.bits / expectedIds * ln2));
+  }
+
+  /**
+   * Adds the given id to this filter.
+   *
+   * @param id the aggregate-root's id.
+   * @since 2.0.0
+   */
+  public void add(final @NotNull String id) {
+    final long hash = hash(id);
+    final int firstHash = (int) hash;
+    final int secondHash = (int) (hash >>> 32);
+    for (int i = 1; i <= this.hashFunctions; i++) {
+      final int bit = this.bitOf(firstHash + i * secondHash);
+      this.words.getAndAccumulate(bit >>> 6, 1L << bit, (word, mask) -> word | mask);
+    }
+  }
+
+  /**
+   * Checks if the given id could be stored.
+   *
+   * @param id the aggregate-root's id.
+   * @return {@code false} if the id is guaranteed to not be stored, otherwise {@code true}.
+   * @since 2.0.0
+   */
+  public boolean mightContain(final @NotNull String id) {
+    final long hash = hash(id);
+    final int firstHash = (int) hash;
+    final int secondHash = (int) (hash >>> 32);
+    for (int i = 1; i <= this.hashFunctions; i++) {
+      final int bit = this.bitOf(firstHash + i * secondHash);
+      if ((this.words.get(bit >>> 6) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int bitOf(final int combinedHash) {
+    return (combinedHash & Integer.MAX_VALUE) % this.bits;
+  }
+
+  private static long hash(final @NotNull String id) {
+    // 64-bit FNV-1a followed by MurmurHash3's finalizer to spread the bits.
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < id.length(); i++) {
+      hash ^= id.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,97 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous operations in the order they were submitted for the same aggregate-root's id, while
+ * operations for different ids run in parallel.
+ * <p>
+ * An operation starts once the previous operations for all its ids completed, successfully or not, so a
+ * save followed by a look-up or deletion of the same aggregate-root never runs out of order, even if its
+ * writes span several asynchronous stages.
+ *
+ * @since 2.0.0
+ */
+public final class AggregateRootKeyedExecutor {
+  private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+  // Guarded by itself, registrations are short and keep a single order between operations sharing ids,
+  // so operations for several ids can't wait for each other.
+  private final Map<String, CompletableFuture<Void>> lastOperations = new HashMap<>();
+
+  /**
+   * Submits an operation for the given aggregate-root's id.
+   *
+   * @param id the aggregate-root's id.
+   * @param operation a supplier that starts the operation and returns its {@link CompletableFuture}.
+   * @param <T> a type-parameter representing the operation's result type.
+   * @return A {@link CompletableFuture} completed with the operation's result.
+   * @since 2.0.0
+   */
+  public <T> @NotNull CompletableFuture<T> submit(final @NotNull String id, final @NotNull Supplier<CompletableFuture<T>> operation) {
+    return this.submit(List.of(id), operation);
+  }
+
+  /**
+   * Submits an operation affecting all the given aggregate-roots' ids.
+   *
+   * @param ids the aggregate-roots' ids.
+   * @param operation a supplier that starts the operation and returns its {@link CompletableFuture}.
+   * @param <T> a type-parameter representing the operation's result type.
+   * @return A {@link CompletableFuture} completed with the operation's result.
+   * @since 2.0.0
+   */
+  public <T> @NotNull CompletableFuture<T> submit(
+    final @NotNull Collection<String> ids,
+    final @NotNull Supplier<CompletableFuture<T>> operation) {
+    final CompletableFuture<Void> completion = new CompletableFuture<>();
+    final List<CompletableFuture<Void>> previousOperations = new ArrayList<>(ids.size());
+    synchronized (this.lastOperations) {
+      for (final String id : ids) {
+        final CompletableFuture<Void> previousOperation = this.lastOperations.put(id, completion);
+        if (previousOperation != null) {
+          previousOperations.add(previousOperation);
+        }
+      }
+    }
+    final CompletableFuture<Void> previousCompletion = previousOperations.isEmpty()
+      ? COMPLETED
+      : CompletableFuture.allOf(previousOperations.toArray(CompletableFuture[]::new));
+    final CompletableFuture<T> result = previousCompletion.thenCompose(unused -> operation.get());
+    result.whenComplete((unused, exception) -> this.release(ids, completion));
+    return result;
+  }
+
+  private void release(final @NotNull Collection<String> ids, final @NotNull CompletableFuture<Void> completion) {
+    synchronized (this.lastOperations) {
+      for (final String id : ids) {
+        this.lastOperations.remove(id, completion);
+      }
+    }
+    // Completed normally even if the operation failed, so next operations still run.
+    completion.complete(null);
+  }
+}
@@ -0,0 +1,122 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure;
+
+/**
+ * Tracks the failures of the requests to an external resource, so they fail fast while the resource is
+ * unavailable instead of waiting for their timeouts.
+ * <p>
+ * The breaker opens after the given number of consecutive failures, and rejects every request until the
+ * open duration elapsed. Then a single request is allowed as probe, which closes the breaker if succeeded,
+ * or opens it again otherwise.
+ *
+ * @since 2.0.0
+ */
+public final class CircuitBreaker {
+  private final int failureThreshold;
+  private final long openMillis;
+  // Guarded by this.
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAt;
+
+  /**
+   * Creates a new {@link CircuitBreaker} with the given parameters.
+   *
+   * @param failureThreshold the consecutive failures required to open the breaker.
+   * @param openMillis the time in milliseconds that requests are rejected once opened.
+   * @since 2.0.0
+   */
+  public CircuitBreaker(final int failureThreshold, final long openMillis) {
+    this.failureThreshold = Math.max(1, failureThreshold);
+    this.openMillis = Math.max(0, openMillis);
+  }
+
+  /**
+   * Checks whether a request can be sent now, the allowed requests must report their outcome through
+   * {@link #recordSuccess()}, {@link #recordFailure()} or {@link #release()}, otherwise a probe would keep
+   * the breaker half-open forever.
+   *
+   * @return Whether the request is allowed.
+   * @since 2.0.0
+   */
+  public synchronized boolean allowsRequest() {
+    return switch (this.state) {
+      case CLOSED -> true;
+      case OPEN -> {
+        if ((System.currentTimeMillis() - this.openedAt) < this.openMillis) {
+          yield false;
+        }
+        // Only this request probes the resource, the next ones are rejected until its outcome is known.
+        this.state = State.HALF_OPEN;
+        yield true;
+      }
+      case HALF_OPEN -> false;
+    };
+  }
+
+  /**
+   * Records that a request succeeded, closing the breaker.
+   *
+   * @since 2.0.0
+   */
+  public synchronized void recordSuccess() {
+    this.consecutiveFailures = 0;
+    this.state = State.CLOSED;
+  }
+
+  /**
+   * Records that a request failed because the resource is unavailable, opening the breaker if it was
+   * the probe or if the failures threshold was reached.
+   *
+   * @since 2.0.0
+   */
+  public synchronized void recordFailure() {
+    if ((this.state == State.HALF_OPEN) || (++this.consecutiveFailures >= this.failureThreshold)) {
+      this.state = State.OPEN;
+      this.openedAt = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Releases an allowed request whose outcome is unknown, as it couldn't be sent or failed before reaching
+   * the resource, so the next request probes the resource if this one was the probe.
+   *
+   * @since 2.0.0
+   */
+  public synchronized void release() {
+    if (this.state == State.HALF_OPEN) {
+      this.state = State.OPEN;
+    }
+  }
+
+  /**
+   * Checks whether the breaker is closed, so requests are sent normally.
+   *
+   * @return Whether the breaker is closed.
+   * @since 2.0.0
+   */
+  public synchronized boolean isClosed() {
+    return this.state == State.CLOSED;
+  }
+
+  private enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+}
@@ -19,7 +19,15 @@ package io.github.aivruu.homes.persistence.infrastructure;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * This class is used to proportionate a custom-size {@link Thread}-pool for the application.
@@ -50,9 +58,83 @@ public final class ExecutorHelper {
    * @since 2.0.0
    */
   public static void createPool(final int threads) {
+    createPool(ExecutorType.PLATFORM, threads, Integer.MAX_VALUE, false, () -> false);
+  }
+
+  /**
+   * Creates the {@link Executor} for the given {@link ExecutorType}.
+   *
+   * @param type the executor's type.
+   * @param threads the number of platform-threads to assign, ignored for virtual-threads.
+   * @param queueCapacity the max number of operations waiting for a platform-thread, ignored for virtual-threads.
+   * @param callerRunsWhenFull whether operations submitted while the queue is full are run by the submitting
+   *     thread, slowing it down, otherwise they're rejected with a {@link RejectedExecutionException}.
+   * @param primaryThread whether the current thread is the server's primary-thread, operations submitted
+   *     from it while the queue is full are always rejected, so they never block it.
+   * @since 2.0.0
+   */
+  public static void createPool(
+    final @NotNull ExecutorType type,
+    final int threads,
+    final int queueCapacity,
+    final boolean callerRunsWhenFull,
+    final @NotNull BooleanSupplier primaryThread
+  ) {
     if (pool != null) {
       return;
     }
-    pool = Executors.newFixedThreadPool(threads, r -> new Thread(r, "Homes-Thread-Executor"));
+    pool = switch (type) {
+      case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Homes-Virtual-Executor-", 1).factory());
+      case PLATFORM -> {
+        final int poolSize = Math.max(1, threads);
+        // Numbered daemon-threads, so thread-dumps can tell them apart and they never keep the process alive.
+        final ThreadFactory threadFactory = Thread.ofPlatform().name("Homes-Thread-Executor-", 1).daemon(true).factory();
+        yield new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory,
+          callerRunsWhenFull ? new OffPrimaryCallerRunsPolicy(primaryThread) : new ThreadPoolExecutor.AbortPolicy());
+      }
+    };
+  }
+
+  // Runs rejected operations on the submitting thread, unless it's the primary-thread or the pool was shut down.
+  private static final class OffPrimaryCallerRunsPolicy implements RejectedExecutionHandler {
+    private final BooleanSupplier primaryThread;
+
+    private OffPrimaryCallerRunsPolicy(final @NotNull BooleanSupplier primaryThread) {
+      this.primaryThread = primaryThread;
+    }
+
+    @Override
+    public void rejectedExecution(final @NotNull Runnable runnable, final @NotNull ThreadPoolExecutor executor) {
+      if (executor.isShutdown() || this.primaryThread.getAsBoolean()) {
+        throw new RejectedExecutionException("Executor's queue is full, operation rejected.");
+      }
+      runnable.run();
+    }
+  }
+
+  /**
+   * Shuts down the thread-pool, waiting for its running tasks up to the given time before interrupting them.
+   *
+   * @param timeoutMillis the max milliseconds to wait for the running tasks.
+   * @return Whether all the tasks finished in time.
+   * @since 2.0.0
+   */
+  public static boolean shutdown(final long timeoutMillis) {
+    if (!(pool instanceof ExecutorService executorService)) {
+      return true;
+    }
+    pool = null;
+    executorService.shutdown();
+    try {
+      if (executorService.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    // Interrupted, so blocked operations don't keep writing after the infrastructure is closed.
+    executorService.shutdownNow();
+    return false;
   }
 }
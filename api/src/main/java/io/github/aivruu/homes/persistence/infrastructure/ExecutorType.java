@@ -0,0 +1,29 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure;
+
+/**
+ * Represents the available executor-types for the infrastructure's operations.
+ *
+ * @since 2.0.0
+ */
+public enum ExecutorType {
+  /** A new virtual-thread per operation, blocking I/O doesn't hold a platform-thread. */
+  VIRTUAL,
+  /** A fixed amount of platform-threads, with a bounded queue for the waiting operations. */
+  PLATFORM
+}
@@ -22,5 +22,5 @@ package io.github.aivruu.homes.persistence.infrastructure;
  * @since 2.0.0
  */
 public enum InfrastructureRepositoryType {
-  JSON, MONGODB
+  JSON, MONGODB, LOG, MAPPED_LOG
 }
@@ -1,5 +1,5 @@
 /**
- * Provides {@link java.util.concurrent.Executor} utility and infrastructure-type enum.
+ * Provides {@link java.util.concurrent.Executor} utility, infrastructure-type enum and stored-ids filter.
  *
  * @since 2.0.0
  */
@@ -61,11 +61,11 @@ public final class PlayerHomeController {
    * @param homeModel the {@link HomeModelEntity} to add.
    * @return Whether the home was added, is player's owner, player hasn't reached {@link PlayerAggregateRoot#MAX_PLAYER_HOMES_ALLOWED}
    * and the home doesn't exist yet.
-   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findInCache(String)
+   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findInCache(java.util.UUID)
    * @since 2.0.0
    */
   public boolean addHome(final @NotNull Player player, final @NotNull HomeModelEntity homeModel) {
-    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId().toString());
+    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId());
     if (playerAggregateRoot == null) {
       return false;
     }
@@ -74,14 +74,7 @@ public final class PlayerHomeController {
       return false;
     }
     Bukkit.getPluginManager().callEvent(new HomeCreateEvent(player, homeModel));
-    // Array size-increasing logic.
-    final HomeModelEntity[] newHomes = new HomeModelEntity[homes.length + 1];
-    byte i = 0;
-    for (; i < homes.length; i++) {
-      newHomes[i] = homes[i];
-    }
-    newHomes[i] = homeModel;
-    playerAggregateRoot.homes(newHomes);
+    playerAggregateRoot.addHome(homeModel);
     return true;
   }
 
@@ -91,12 +84,12 @@ public final class PlayerHomeController {
    * @param player the player.
    * @param homeId the home to delete.
    * @return Whether the home was existing and removed.
-   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findInCache(String)
+   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findInCache(java.util.UUID)
    * @see PlayerAggregateRoot#home(String)
    * @since 2.0.0
    */
   public boolean removeHome(final @NotNull Player player, final @NotNull String homeId) {
-    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId().toString());
+    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId());
     if (playerAggregateRoot == null) {
       return false;
     }
@@ -105,14 +98,7 @@ public final class PlayerHomeController {
       return false;
     }
     Bukkit.getPluginManager().callEvent(new HomeDeleteEvent(player, homeId));
-    final HomeModelEntity[] homes = playerAggregateRoot.homes();
-    final HomeModelEntity[] newHomes = new HomeModelEntity[homes.length - 1];
-    for (byte i = 0; i < newHomes.length; i++) {
-      if (homes[i].id().equals(homeId)) continue;
-      newHomes[i] = homes[i];
-    }
-    playerAggregateRoot.homes(newHomes);
-    return true;
+    return playerAggregateRoot.removeHome(homeId);
   }
 
   /**
@@ -127,12 +113,12 @@ public final class PlayerHomeController {
    * <li>{@link #PLAYER_HOME_DOES_NOT_EXIST} if the player's home does not exist.</li>
    * <li>{@link #PLAYER_HOME_WORLD_IS_NOT_AVAILABLE} if the player's home's world is not available.</li>
    * </ul>
-   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findInCache(String)
+   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findInCache(java.util.UUID)
    * @see PlayerAggregateRoot#home(String)
    * @since 2.0.0
    */
   public byte teleportToHome(final @NotNull Player player, final @NotNull String homeId) {
-    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId().toString());
+    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(player.getUniqueId());
     if (playerAggregateRoot == null) {
       return PLAYER_INFORMATION_IS_NOT_AVAILABLE;
     }
@@ -24,25 +24,49 @@ import net.kyori.adventure.text.logger.slf4j.ComponentLogger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * This service provides players-information loading and saving when required.
  *
  * @since 2.0.0
  */
 public final class PlayerManagerService {
+  private static final long HANDOFF_POLL_INTERVAL_MILLIS = 50;
   private final ComponentLogger logger;
   private final AggregateRootRegistry<PlayerAggregateRoot> playerAggregateRootRegistry;
+  private final Map<String, CompletableFuture<PlayerAggregateRoot>> loadingAggregateRoots = new ConcurrentHashMap<>();
+  private final long loadTimeoutMillis;
+  private final long handoffTimeoutMillis;
+  private final Map<String, PlayerAggregateRoot> restoredAggregateRoots = new ConcurrentHashMap<>();
+  private volatile long restoredUntilMillis;
 
   /**
    * Creates a new {@link PlayerManagerService} with the provided parameters.
    *
    * @param logger the logger used for information and error messages.
    * @param playerAggregateRootRegistry the {@link io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry}.
+   * @param loadTimeoutMillis the max milliseconds to wait for a player's information loading.
+   * @param handoffTimeoutMillis the max milliseconds to wait for a player's information being saved by
+   *     another server, before loading it.
    * @since 2.0.0
    */
-  public PlayerManagerService(final @NotNull ComponentLogger logger, final @NotNull AggregateRootRegistry<PlayerAggregateRoot> playerAggregateRootRegistry) {
+  public PlayerManagerService(
+    final @NotNull ComponentLogger logger,
+    final @NotNull AggregateRootRegistry<PlayerAggregateRoot> playerAggregateRootRegistry,
+    final long loadTimeoutMillis,
+    final long handoffTimeoutMillis) {
     this.logger = logger;
     this.playerAggregateRootRegistry = playerAggregateRootRegistry;
+    this.loadTimeoutMillis = loadTimeoutMillis;
+    this.handoffTimeoutMillis = handoffTimeoutMillis;
   }
 
   /**
@@ -57,21 +81,116 @@ public final class PlayerManagerService {
   }
 
   /**
-   * Loads the specified player's information.
+   * Returns a {@link PlayerAggregateRoot} for the provided {@link UUID}.
+   *
+   * @param id the player's {@link UUID}.
+   * @return The {@link PlayerAggregateRoot} or {@code null} if player is offline.
+   * @since 2.0.0
+   */
+  public @Nullable PlayerAggregateRoot playerAggregateRootOf(final @NotNull UUID id) {
+    return this.playerAggregateRootRegistry.findInCache(id);
+  }
+
+  /**
+   * Keeps the given players' information, restored from a snapshot of the cache, so these players are
+   * loaded from it instead of the infrastructure if they join before the given time, and their stored
+   * version is still the restored one. Only the stored version is read from the infrastructure.
+   *
+   * @param playerAggregateRoots the restored {@link PlayerAggregateRoot}s, matching their stored state when
+   *     the snapshot was written.
+   * @param restoredUntilMillis the time in milliseconds until which the restored information is used.
+   * @since 2.0.0
+   */
+  public void restore(final @NotNull Collection<PlayerAggregateRoot> playerAggregateRoots, final long restoredUntilMillis) {
+    for (final PlayerAggregateRoot playerAggregateRoot : playerAggregateRoots) {
+      this.restoredAggregateRoots.put(playerAggregateRoot.id(), playerAggregateRoot);
+    }
+    this.restoredUntilMillis = restoredUntilMillis;
+  }
+
+  /**
+   * Loads the specified player's information, waiting at most the configured timeout for it.
+   * <p>
+   * Concurrent loads for the same player share the same infrastructure-request, so only one
+   * lookup (and creation for new players) is made. If another server is still saving the player's
+   * information, its save is awaited for a bounded time before loading it. Players whose save is still
+   * pending on this server are loaded from it instead.
    *
    * @param id the player's id.
-   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findInInfrastructure(String)
+   * @return Whether the information was loaded and cached before the timeout.
+   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#findAsync(String)
    * @since 2.0.0
    */
-  public void loadOne(final @NotNull String id) {
-    PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInInfrastructure(id);
-    if (playerAggregateRoot != null) {
-      this.playerAggregateRootRegistry.register(playerAggregateRoot);
-      return;
+  public boolean loadOne(final @NotNull String id) {
+    if (this.playerAggregateRootRegistry.existsInCache(id)) {
+      return true;
+    }
+    final CompletableFuture<PlayerAggregateRoot> loadFuture = this.loadingAggregateRoots.computeIfAbsent(id, this::loadFromInfrastructure);
+    try {
+      this.playerAggregateRootRegistry.register(loadFuture.get(this.loadTimeoutMillis, TimeUnit.MILLISECONDS));
+      return true;
+    } catch (final TimeoutException exception) {
+      this.logger.warn("The player's aggregate-root couldn't be loaded within {} milliseconds.", this.loadTimeoutMillis);
+      return false;
+    } catch (final ExecutionException exception) {
+      this.logger.error("An error occurred while loading the player's aggregate-root.", exception.getCause());
+      return false;
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      this.loadingAggregateRoots.remove(id, loadFuture);
     }
-    playerAggregateRoot = new PlayerAggregateRoot(new PlayerModelEntity(id, new HomeModelEntity[0]));
-    this.playerAggregateRootRegistry.register(playerAggregateRoot);
-    this.handleAggregateRootSave(playerAggregateRoot);
+  }
+
+  private @NotNull CompletableFuture<PlayerAggregateRoot> loadFromInfrastructure(final @NotNull String id) {
+    // A player rejoining before its last save was written keeps its latest state, and this server is still
+    // the one saving it, so there's no handoff to wait for.
+    final PlayerAggregateRoot pendingAggregateRoot = this.playerAggregateRootRegistry.findPendingSave(id);
+    if (pendingAggregateRoot != null) {
+      return CompletableFuture.completedFuture(pendingAggregateRoot);
+    }
+    final PlayerAggregateRoot restoredAggregateRoot = this.restoredAggregateRootOf(id);
+    return this.awaitHandoff(id, System.currentTimeMillis() + this.handoffTimeoutMillis)
+      .thenCompose(unused -> (restoredAggregateRoot == null)
+        ? this.playerAggregateRootRegistry.findAsync(id)
+        : this.playerAggregateRootRegistry.storedVersionAsync(id).thenCompose(storedVersion -> (storedVersion == restoredAggregateRoot.version())
+          ? CompletableFuture.completedFuture(restoredAggregateRoot)
+          // Changed by another server since the snapshot was written.
+          : this.playerAggregateRootRegistry.findAsync(id)))
+      .thenApply(playerAggregateRoot -> {
+        if (playerAggregateRoot != null) {
+          return playerAggregateRoot;
+        }
+        final PlayerAggregateRoot newPlayerAggregateRoot = new PlayerAggregateRoot(new PlayerModelEntity(id, new HomeModelEntity[0]));
+        this.handleAggregateRootSave(newPlayerAggregateRoot);
+        return newPlayerAggregateRoot;
+      });
+  }
+
+  private @Nullable PlayerAggregateRoot restoredAggregateRootOf(final @NotNull String id) {
+    if (this.restoredAggregateRoots.isEmpty()) {
+      return null;
+    }
+    if (System.currentTimeMillis() >= this.restoredUntilMillis) {
+      this.restoredAggregateRoots.clear();
+      return null;
+    }
+    return this.restoredAggregateRoots.remove(id);
+  }
+
+  private @NotNull CompletableFuture<Void> awaitHandoff(final @NotNull String id, final long deadlineMillis) {
+    return this.playerAggregateRootRegistry.isLeasedAsync(id).thenCompose(leased -> {
+      if (!leased) {
+        return CompletableFuture.completedFuture(null);
+      }
+      if (System.currentTimeMillis() >= deadlineMillis) {
+        this.logger.warn("The player's information is still being saved by another server, loading its last stored state.");
+        return CompletableFuture.completedFuture(null);
+      }
+      return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(HANDOFF_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS))
+        .thenCompose(unused -> this.awaitHandoff(id, deadlineMillis));
+    });
   }
 
   /**
@@ -83,8 +202,10 @@ public final class PlayerManagerService {
    */
   public void handleAggregateRootSave(final @NotNull PlayerAggregateRoot playerAggregateRoot) {
     this.playerAggregateRootRegistry.save(playerAggregateRoot)
-      .thenAccept(wasSaved -> {
-        if (!wasSaved) {
+      .thenAccept(result -> {
+        if (result.wasConflict()) {
+          this.logger.warn("The player's aggregate-root wasn't saved, as it was changed by another server since it was loaded.");
+        } else if (result.wasError()) {
           this.logger.warn("The player's aggregate-root couldn't be saved into infrastructure.");
         }
       })
@@ -94,11 +215,25 @@ public final class PlayerManagerService {
       });
   }
 
+  private void handOff(final @NotNull PlayerAggregateRoot playerAggregateRoot) {
+    // Most players never change their homes, their stored information is already the current one.
+    if (!playerAggregateRoot.isDirty()) {
+      return;
+    }
+    // Leased before saving, so a server loading the player meanwhile waits for this version.
+    this.playerAggregateRootRegistry.leaseAsync(playerAggregateRoot.id(), playerAggregateRoot.version(), this.handoffTimeoutMillis)
+      .exceptionally(exception -> {
+        this.logger.warn("The player's information couldn't be leased before saving it.", exception);
+        return false;
+      })
+      .thenRun(() -> this.handleAggregateRootSave(playerAggregateRoot));
+  }
+
   /**
-   * Unloads and saves the specified player's information.
+   * Unloads and saves the specified player's information if it was changed, leasing it while it's saved.
    *
    * @param id the player's id.
-   * @return Whether the information was unloaded and saved.
+   * @return Whether the information was unloaded.
    * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#unregister(String)
    * @since 2.0.0
    */
@@ -107,7 +242,24 @@ public final class PlayerManagerService {
     if (playerAggregateRoot == null) {
       return false;
     }
-    this.handleAggregateRootSave(playerAggregateRoot);
+    this.handOff(playerAggregateRoot);
+    return true;
+  }
+
+  /**
+   * Unloads and saves the specified player's information if it was changed, leasing it while it's saved.
+   *
+   * @param id the player's {@link UUID}.
+   * @return Whether the information was unloaded.
+   * @see io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry#unregister(UUID)
+   * @since 2.0.0
+   */
+  public boolean unloadOne(final @NotNull UUID id) {
+    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.unregister(id);
+    if (playerAggregateRoot == null) {
+      return false;
+    }
+    this.handOff(playerAggregateRoot);
     return true;
   }
 }
@@ -19,13 +19,17 @@ package io.github.aivruu.homes.player.application.registry;
 import io.github.aivruu.homes.aggregate.domain.registry.AggregateRootRegistry;
 import io.github.aivruu.homes.aggregate.domain.repository.AggregateRootRepository;
 import io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository;
+import io.github.aivruu.homes.persistence.application.AggregateRootWriteBehindQueue;
 import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * An {@link AggregateRootRegistry} implementation for {@link PlayerAggregateRoot} management.
@@ -33,14 +37,27 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * @since 2.0.0
  */
 public final class PlayerAggregateRootRegistry implements AggregateRootRegistry<PlayerAggregateRoot> {
+  private static final int OFFLINE_CACHE_SIZE = 256;
+  private static final long OFFLINE_CACHE_EXPIRY_MILLIS = 60_000;
+  // Offline players looked-up by integrations, kept apart from the cache so they aren't handled as
+  // online players, access-ordered to evict the least recently used ones first.
+  private final Map<String, OfflinePlayerAggregateRoot> offlinePlayerAggregateRoots = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, OfflinePlayerAggregateRoot> eldest) {
+      return this.size() > OFFLINE_CACHE_SIZE;
+    }
+  };
   private final AggregateRootRepository<PlayerAggregateRoot> playerAggregateRootRepository;
   private final AsyncAggregateRootRepository<PlayerAggregateRoot> playerAsyncAggregateRootRepository;
+  private final AggregateRootWriteBehindQueue<PlayerAggregateRoot> playerWriteBehindQueue;
 
   public PlayerAggregateRootRegistry(
     final @NotNull AggregateRootRepository<PlayerAggregateRoot> playerAggregateRootRepository,
-    final @NotNull AsyncAggregateRootRepository<PlayerAggregateRoot> playerAsyncAggregateRootRepository) {
+    final @NotNull AsyncAggregateRootRepository<PlayerAggregateRoot> playerAsyncAggregateRootRepository,
+    final @NotNull AggregateRootWriteBehindQueue<PlayerAggregateRoot> playerWriteBehindQueue) {
     this.playerAggregateRootRepository = playerAggregateRootRepository;
     this.playerAsyncAggregateRootRepository = playerAsyncAggregateRootRepository;
+    this.playerWriteBehindQueue = playerWriteBehindQueue;
   }
 
   @Override
@@ -48,14 +65,68 @@ public final class PlayerAggregateRootRegistry implements AggregateRootRegistry<
     return this.playerAggregateRootRepository.findSync(id);
   }
 
+  @Override
+  public @Nullable PlayerAggregateRoot findInCache(final @NotNull UUID id) {
+    return this.playerAggregateRootRepository.findSync(id);
+  }
+
   @Override
   public @Nullable PlayerAggregateRoot findInBoth(final @NotNull String id) {
-    return null;
+    return this.findInBothAsync(id).join();
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable PlayerAggregateRoot> findInBothAsync(final @NotNull String id) {
+    final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRepository.findSync(id);
+    if (playerAggregateRoot != null) {
+      return CompletableFuture.completedFuture(playerAggregateRoot);
+    }
+    synchronized (this.offlinePlayerAggregateRoots) {
+      final OfflinePlayerAggregateRoot offlinePlayerAggregateRoot = this.offlinePlayerAggregateRoots.get(id);
+      if (offlinePlayerAggregateRoot != null && !offlinePlayerAggregateRoot.isExpired()) {
+        return CompletableFuture.completedFuture(offlinePlayerAggregateRoot.aggregateRoot);
+      }
+    }
+    return this.findAsync(id).thenApply(foundPlayerAggregateRoot -> {
+      if (foundPlayerAggregateRoot == null) {
+        return null;
+      }
+      // Checked under the same lock as registrations, so a player who joined while the infrastructure
+      // was queried is never kept as offline, and its cached aggregate-root is returned instead.
+      synchronized (this.offlinePlayerAggregateRoots) {
+        final PlayerAggregateRoot cachedPlayerAggregateRoot = this.playerAggregateRootRepository.findSync(id);
+        if (cachedPlayerAggregateRoot != null) {
+          return cachedPlayerAggregateRoot;
+        }
+        // Concurrent look-ups must share the same aggregate-root, so their changes aren't lost.
+        final OfflinePlayerAggregateRoot offlinePlayerAggregateRoot = this.offlinePlayerAggregateRoots.get(id);
+        if (offlinePlayerAggregateRoot != null && !offlinePlayerAggregateRoot.isExpired()) {
+          return offlinePlayerAggregateRoot.aggregateRoot;
+        }
+        this.offlinePlayerAggregateRoots.put(id, new OfflinePlayerAggregateRoot(foundPlayerAggregateRoot));
+        return foundPlayerAggregateRoot;
+      }
+    });
   }
 
   @Override
   public @Nullable PlayerAggregateRoot findInInfrastructure(final @NotNull String id) {
-    return this.playerAsyncAggregateRootRepository.findAsync(id).join();
+    return this.findAsync(id).join();
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable PlayerAggregateRoot> findAsync(final @NotNull String id) {
+    // The stored state is older than the one waiting to be written.
+    final PlayerAggregateRoot pendingPlayerAggregateRoot = this.playerWriteBehindQueue.findPending(id);
+    if (pendingPlayerAggregateRoot != null) {
+      return CompletableFuture.completedFuture(pendingPlayerAggregateRoot);
+    }
+    return this.playerAsyncAggregateRootRepository.findAsync(id);
+  }
+
+  @Override
+  public @Nullable PlayerAggregateRoot findPendingSave(final @NotNull String id) {
+    return this.playerWriteBehindQueue.findPending(id);
   }
 
   @Override
@@ -73,25 +144,78 @@ public final class PlayerAggregateRootRegistry implements AggregateRootRegistry<
     return this.playerAggregateRootRepository.existsSync(id);
   }
 
+  @Override
+  public boolean existsInCache(final @NotNull UUID id) {
+    return this.playerAggregateRootRepository.existsSync(id);
+  }
+
   @Override
   public boolean existsInInfrastructure(final @NotNull String id) {
-    final AtomicBoolean provider = new AtomicBoolean();
-    this.playerAsyncAggregateRootRepository.existsAsync(id).thenAccept(provider::set);
-    return provider.get();
+    return this.existsAsync(id).join();
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Boolean> existsAsync(final @NotNull String id) {
+    if (this.playerWriteBehindQueue.findPending(id) != null) {
+      return CompletableFuture.completedFuture(true);
+    }
+    return this.playerAsyncAggregateRootRepository.existsAsync(id);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Long> storedVersionAsync(final @NotNull String id) {
+    return this.playerAsyncAggregateRootRepository.storedVersionAsync(id);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Boolean> leaseAsync(final @NotNull String id, final long version, final long durationMillis) {
+    return this.playerAsyncAggregateRootRepository.leaseAsync(id, version, durationMillis);
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Boolean> isLeasedAsync(final @NotNull String id) {
+    return this.playerAsyncAggregateRootRepository.isLeasedAsync(id);
   }
 
   @Override
   public void register(final @NotNull PlayerAggregateRoot aggregateRoot) {
-    this.playerAggregateRootRepository.saveSync(aggregateRoot);
+    synchronized (this.offlinePlayerAggregateRoots) {
+      this.playerAggregateRootRepository.saveSync(aggregateRoot);
+      this.offlinePlayerAggregateRoots.remove(aggregateRoot.id());
+    }
   }
 
   @Override
   public @Nullable PlayerAggregateRoot unregister(final @NotNull String id) {
-    return this.playerAggregateRootRepository.deleteSync(id);
+    synchronized (this.offlinePlayerAggregateRoots) {
+      this.offlinePlayerAggregateRoots.remove(id);
+      return this.playerAggregateRootRepository.deleteSync(id);
+    }
+  }
+
+  @Override
+  public @Nullable PlayerAggregateRoot unregister(final @NotNull UUID id) {
+    synchronized (this.offlinePlayerAggregateRoots) {
+      this.offlinePlayerAggregateRoots.remove(id.toString());
+      return this.playerAggregateRootRepository.deleteSync(id);
+    }
   }
 
   @Override
-  public @NotNull CompletableFuture<Boolean> save(final @NotNull PlayerAggregateRoot aggregateRoot) {
-    return this.playerAsyncAggregateRootRepository.saveAsync(aggregateRoot);
+  public @NotNull CompletableFuture<AggregateRootSaveResult> save(final @NotNull PlayerAggregateRoot aggregateRoot) {
+    return this.playerWriteBehindQueue.enqueue(aggregateRoot);
+  }
+
+  private static final class OfflinePlayerAggregateRoot {
+    private final PlayerAggregateRoot aggregateRoot;
+    private final long expiresAtMillis = System.currentTimeMillis() + OFFLINE_CACHE_EXPIRY_MILLIS;
+
+    private OfflinePlayerAggregateRoot(final @NotNull PlayerAggregateRoot aggregateRoot) {
+      this.aggregateRoot = aggregateRoot;
+    }
+
+    private boolean isExpired() {
+      return System.currentTimeMillis() >= this.expiresAtMillis;
+    }
   }
 }
@@ -18,9 +18,14 @@ package io.github.aivruu.homes.player.domain;
 
 import io.github.aivruu.homes.aggregate.domain.AggregateRoot;
 import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.domain.HomeMutation;
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * An {@link AggregateRoot} implementation for {@link PlayerModelEntity}.
  *
@@ -28,7 +33,12 @@ import org.jetbrains.annotations.Nullable;
  */
 public final class PlayerAggregateRoot extends AggregateRoot {
   public static final byte MAX_PLAYER_HOMES_ALLOWED = 5;
+  // Once exceeded, writing the whole aggregate-root is cheaper than applying every mutation.
+  private static final int MAX_PENDING_MUTATIONS = 16;
   private final PlayerModelEntity playerModel;
+  private final List<HomeMutation> pendingMutations = new ArrayList<>();
+  // Aggregate-roots are written fully until their mutations are drained for first time.
+  private boolean fullWriteRequired = true;
 
   /**
    * Creates a new {@link PlayerAggregateRoot} with the provided parameters.
@@ -37,7 +47,18 @@ public final class PlayerAggregateRoot extends AggregateRoot {
    * @since 2.0.0
    */
   public PlayerAggregateRoot(final @NotNull PlayerModelEntity playerModel) {
-    super(playerModel.id());
+    this(playerModel, 0);
+  }
+
+  /**
+   * Creates a new {@link PlayerAggregateRoot} with the provided parameters.
+   *
+   * @param playerModel the {@link PlayerModelEntity} to be used.
+   * @param version the aggregate-root's stored version.
+   * @since 2.0.0
+   */
+  public PlayerAggregateRoot(final @NotNull PlayerModelEntity playerModel, final long version) {
+    super(playerModel.id(), version);
     this.playerModel = playerModel;
   }
 
@@ -69,7 +90,185 @@ public final class PlayerAggregateRoot extends AggregateRoot {
    * @param homes the new homes-array.
    * @since 2.0.0
    */
-  public void homes(final @NotNull HomeModelEntity[] homes) {
+  public synchronized void homes(final @NotNull HomeModelEntity[] homes) {
+    this.playerModel.homes(homes);
+    super.incrementVersion();
+    this.requireFullWrite();
+  }
+
+  /**
+   * Adds the given {@link HomeModelEntity} to the player's homes-array, and records the mutation.
+   *
+   * @param homeModel the home to add.
+   * @since 2.0.0
+   */
+  public synchronized void addHome(final @NotNull HomeModelEntity homeModel) {
+    final HomeModelEntity[] homes = this.playerModel.homes();
+    final HomeModelEntity[] newHomes = new HomeModelEntity[homes.length + 1];
+    System.arraycopy(homes, 0, newHomes, 0, homes.length);
+    newHomes[homes.length] = homeModel;
+    this.playerModel.homes(newHomes);
+    // Copied, so later position changes aren't written by this mutation but by their own ones.
+    this.recordMutation(new HomeMutation.Added(homeModel.copy()));
+  }
+
+  /**
+   * Removes the specified home from the player's homes-array, and records the mutation.
+   *
+   * @param homeId the home to remove.
+   * @return Whether the home existed and was removed.
+   * @since 2.0.0
+   */
+  public synchronized boolean removeHome(final @NotNull String homeId) {
+    final HomeModelEntity[] homes = this.playerModel.homes();
+    final List<HomeModelEntity> newHomes = new ArrayList<>(homes.length);
+    for (final HomeModelEntity homeModel : homes) {
+      if (homeModel == null || homeModel.id().equals(homeId)) continue;
+      newHomes.add(homeModel);
+    }
+    if (newHomes.size() == homes.length) {
+      return false;
+    }
+    this.playerModel.homes(newHomes.toArray(HomeModelEntity[]::new));
+    this.recordMutation(new HomeMutation.Removed(homeId));
+    return true;
+  }
+
+  /**
+   * Sets a new {@link HomePositionValueObject} for the specified home, and records the mutation.
+   *
+   * @param homeId the home's id.
+   * @param position the home's new position.
+   * @return Whether the home exists and its position was changed.
+   * @since 2.0.0
+   */
+  public synchronized boolean homePosition(final @NotNull String homeId, final @NotNull HomePositionValueObject position) {
+    final HomeModelEntity homeModel = this.playerModel.home(homeId);
+    if (homeModel == null) {
+      return false;
+    }
+    homeModel.position(position);
+    this.recordMutation(new HomeMutation.PositionChanged(homeId, position));
+    return true;
+  }
+
+  /**
+   * Replaces the player's homes-array with the given one, read from the infrastructure after being changed
+   * elsewhere, unless this aggregate-root has changes that weren't written yet.
+   *
+   * @param homes the stored homes-array.
+   * @param version the stored homes-array's version.
+   * @return Whether the homes-array was replaced, it isn't if the stored version isn't newer.
+   * @since 2.0.0
+   */
+  public synchronized boolean refreshHomes(final @NotNull HomeModelEntity[] homes, final long version) {
+    // Pending changes are written later over the stored state, so they must be kept.
+    if (this.fullWriteRequired || !this.pendingMutations.isEmpty() || version <= super.version()) {
+      return false;
+    }
     this.playerModel.homes(homes);
+    super.version(version);
+    return true;
+  }
+
+  /**
+   * Replaces the player's homes-array with the given one, which couldn't be saved before, so it's written
+   * fully over this aggregate-root's stored state on next save.
+   *
+   * @param homes the not saved homes-array.
+   * @param version the not saved homes-array's version.
+   * @since 2.0.0
+   */
+  public synchronized void restoreHomes(final @NotNull HomeModelEntity[] homes, final long version) {
+    this.playerModel.homes(homes);
+    super.restoreVersion(version);
+    this.requireFullWrite();
+  }
+
+  private synchronized void recordMutation(final @NotNull HomeMutation mutation) {
+    super.incrementVersion();
+    if (this.fullWriteRequired) {
+      return;
+    }
+    if (this.pendingMutations.size() >= MAX_PENDING_MUTATIONS) {
+      this.requireFullWrite();
+      return;
+    }
+    this.pendingMutations.add(mutation);
+  }
+
+  /**
+   * Returns the mutations recorded since the last call to this method, and starts recording from the
+   * current state.
+   *
+   * @return The recorded {@link HomeMutation}s in their order, or {@code null} if they aren't enough to
+   *     rebuild the current state from the state at last call, so the whole aggregate-root must be written.
+   * @since 2.0.0
+   */
+  public synchronized @Nullable List<HomeMutation> drainMutations() {
+    if (this.fullWriteRequired) {
+      this.fullWriteRequired = false;
+      this.pendingMutations.clear();
+      return null;
+    }
+    final List<HomeMutation> mutations = List.copyOf(this.pendingMutations);
+    this.pendingMutations.clear();
+    return mutations;
+  }
+
+  /**
+   * Captures this aggregate-root's current state to be saved, along with the mutations recorded since the
+   * last save, and marks its version as being saved.
+   * <p>
+   * The captured state is an immutable snapshot, a new {@link PlayerAggregateRoot} with copies of the
+   * homes that share their position value-objects, so infrastructures can encode it from any thread while
+   * this aggregate-root keeps being mutated. Mutations are applied under this aggregate-root's lock, so
+   * the snapshot never contains half-applied ones.
+   *
+   * @return The {@link Saving} for this aggregate-root's current state.
+   * @see #drainMutations()
+   * @since 2.0.0
+   */
+  public synchronized @NotNull Saving beginSaving() {
+    final long version = super.version();
+    final HomeModelEntity[] homes = this.playerModel.homes();
+    final HomeModelEntity[] capturedHomes = new HomeModelEntity[homes.length];
+    for (int i = 0; i < homes.length; i++) {
+      capturedHomes[i] = (homes[i] == null) ? null : homes[i].copy();
+    }
+    final PlayerAggregateRoot state = new PlayerAggregateRoot(new PlayerModelEntity(super.id(), capturedHomes), version);
+    return new Saving(state, super.markSaving(version), this.drainMutations());
+  }
+
+  /**
+   * Marks this aggregate-root to be written fully on next {@link #drainMutations()}, used when the
+   * drained mutations couldn't be persisted.
+   *
+   * @since 2.0.0
+   */
+  public synchronized void requireFullWrite() {
+    this.fullWriteRequired = true;
+    this.pendingMutations.clear();
+  }
+
+  /**
+   * A {@link PlayerAggregateRoot}'s state being saved.
+   *
+   * @param state the captured state to write.
+   * @param expectedVersion the version the stored state must have for the save to be applied.
+   * @param mutations the mutations recorded since the last save, or {@code null} if the whole state
+   *     must be written.
+   * @since 2.0.0
+   */
+  public record Saving(@NotNull PlayerAggregateRoot state, long expectedVersion, @Nullable List<HomeMutation> mutations) {
+    /**
+     * Returns the version being saved.
+     *
+     * @return The captured state's version.
+     * @since 2.0.0
+     */
+    public long version() {
+      return this.state.version();
+    }
   }
 }
@@ -27,7 +27,8 @@ import org.jetbrains.annotations.Nullable;
  */
 public final class PlayerModelEntity {
   private final String id;
-  private HomeModelEntity[] homes;
+  // Written by the main-thread and read by the infrastructure's threads during saves.
+  private volatile HomeModelEntity[] homes;
 
   /**
    * Creates a new {@link PlayerModelEntity} with the provided parameters.
@@ -0,0 +1,97 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.result.domain;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents the result (and status-code) of an aggregate-root's save into the infrastructure.
+ *
+ * @param status the status-code.
+ * @since 2.0.0
+ */
+public record AggregateRootSaveResult(byte status) {
+  /** The aggregate-root was saved correctly. */
+  public static final byte SAVED_STATUS = 0;
+  /** The aggregate-root wasn't saved, as the stored one was changed by another writer since it was read. */
+  public static final byte CONFLICT_STATUS = 1;
+  /** Something went wrong during aggregate-root's save. */
+  public static final byte ERROR_STATUS = 2;
+  private static final AggregateRootSaveResult SAVED = new AggregateRootSaveResult(SAVED_STATUS);
+  private static final AggregateRootSaveResult CONFLICT = new AggregateRootSaveResult(CONFLICT_STATUS);
+  private static final AggregateRootSaveResult ERROR = new AggregateRootSaveResult(ERROR_STATUS);
+
+  /**
+   * Returns a {@link AggregateRootSaveResult} for a correct save.
+   *
+   * @return A {@link AggregateRootSaveResult} with {@link #SAVED_STATUS}.
+   * @since 2.0.0
+   */
+  public static @NotNull AggregateRootSaveResult saved() {
+    return SAVED;
+  }
+
+  /**
+   * Returns a {@link AggregateRootSaveResult} for a save rejected due to a concurrent change.
+   *
+   * @return A {@link AggregateRootSaveResult} with {@link #CONFLICT_STATUS}.
+   * @since 2.0.0
+   */
+  public static @NotNull AggregateRootSaveResult conflict() {
+    return CONFLICT;
+  }
+
+  /**
+   * Returns a {@link AggregateRootSaveResult} for a failed save.
+   *
+   * @return A {@link AggregateRootSaveResult} with {@link #ERROR_STATUS}.
+   * @since 2.0.0
+   */
+  public static @NotNull AggregateRootSaveResult error() {
+    return ERROR;
+  }
+
+  /**
+   * Checks if the aggregate-root was saved correctly.
+   *
+   * @return Whether this {@link AggregateRootSaveResult}'s status-code is {@link #SAVED_STATUS}.
+   * @since 2.0.0
+   */
+  public boolean wasSaved() {
+    return this.status == SAVED_STATUS;
+  }
+
+  /**
+   * Checks if the aggregate-root's save was rejected due to a concurrent change.
+   *
+   * @return Whether this {@link AggregateRootSaveResult}'s status-code is {@link #CONFLICT_STATUS}.
+   * @since 2.0.0
+   */
+  public boolean wasConflict() {
+    return this.status == CONFLICT_STATUS;
+  }
+
+  /**
+   * Checks if an error occurred during the aggregate-root's save.
+   *
+   * @return Whether this {@link AggregateRootSaveResult}'s status-code is {@link #ERROR_STATUS}.
+   * @since 2.0.0
+   */
+  public boolean wasError() {
+    return this.status == ERROR_STATUS;
+  }
+}
@@ -0,0 +1,213 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.application;
+
+import io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository;
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class AggregateRootWriteBehindQueueTest {
+  // Long enough for the scheduled flushing to never run during a test, so flushes are triggered manually.
+  private static final long FLUSH_INTERVAL_MILLIS = 60_000;
+  private final RecordingRepository repository = new RecordingRepository();
+  private AggregateRootWriteBehindQueue<PlayerAggregateRoot> queue;
+
+  @AfterEach
+  void close() {
+    if (this.queue != null) {
+      this.repository.completeAll();
+      this.queue.close();
+    }
+  }
+
+  @Test
+  void savesOfTheSamePlayerAreCoalescedIntoOneWrite() {
+    this.queue = this.startedQueue(16);
+    final PlayerAggregateRoot first = player("first");
+    final PlayerAggregateRoot latest = player("first");
+    final CompletableFuture<AggregateRootSaveResult> firstSave = this.queue.enqueue(first);
+    final CompletableFuture<AggregateRootSaveResult> latestSave = this.queue.enqueue(latest);
+    this.queue.enqueue(player("second"));
+    assertSame(firstSave, latestSave);
+    assertEquals(2, this.queue.pendingCount());
+
+    this.repository.completeImmediately = true;
+    this.queue.flush();
+    assertEquals(1, this.repository.batches.size());
+    final List<PlayerAggregateRoot> batch = this.repository.batches.get(0);
+    assertEquals(2, batch.size());
+    assertSame(latest, batch.get(0));
+    assertEquals("second", batch.get(1).id());
+    assertTrue(latestSave.join().wasSaved());
+    assertEquals(0, this.queue.pendingCount());
+  }
+
+  @Test
+  void pendingSavesAreSplitIntoBatches() {
+    this.queue = this.startedQueue(2);
+    for (int i = 0; i < 5; i++) {
+      this.queue.enqueue(player("player-" + i));
+    }
+    this.repository.completeImmediately = true;
+    this.queue.flush();
+    assertEquals(3, this.repository.batches.size());
+    assertEquals(2, this.repository.batches.get(0).size());
+    assertEquals(2, this.repository.batches.get(1).size());
+    assertEquals(1, this.repository.batches.get(2).size());
+  }
+
+  @Test
+  void savesAreFoundUntilWritten() {
+    this.queue = this.startedQueue(16);
+    final PlayerAggregateRoot playerAggregateRoot = player("player");
+    final CompletableFuture<AggregateRootSaveResult> save = this.queue.enqueue(playerAggregateRoot);
+    assertSame(playerAggregateRoot, this.queue.findPending("player"));
+
+    // Closing hands the save to the repository, which doesn't complete it yet.
+    final List<AggregateRootWriteBehindQueue.FlushedSave<PlayerAggregateRoot>> flushedSaves = this.queue.close();
+    assertEquals(1, flushedSaves.size());
+    assertSame(playerAggregateRoot, flushedSaves.get(0).aggregateRoot());
+    assertSame(save, flushedSaves.get(0).result());
+    assertSame(playerAggregateRoot, this.queue.findPending("player"));
+    assertFalse(save.isDone());
+
+    this.repository.completeAll();
+    assertTrue(save.join().wasSaved());
+    assertNull(this.queue.findPending("player"));
+  }
+
+  @Test
+  void savesStillBeingWrittenAreKeptWhenTheSamePlayerIsFlushedAgain() throws InterruptedException {
+    this.queue = this.startedQueue(16);
+    final PlayerAggregateRoot first = player("player");
+    final CompletableFuture<AggregateRootSaveResult> firstSave = this.queue.enqueue(first);
+    // A scheduled flush waiting for its batch, while the queue is closed.
+    final Thread flusher = new Thread(this.queue::flush);
+    flusher.start();
+    while (this.repository.batchCount() == 0) {
+      Thread.sleep(1);
+    }
+    final PlayerAggregateRoot latest = player("player");
+    final CompletableFuture<AggregateRootSaveResult> latestSave = this.queue.enqueue(latest);
+
+    final List<AggregateRootWriteBehindQueue.FlushedSave<PlayerAggregateRoot>> flushedSaves = this.queue.close();
+    assertEquals(2, flushedSaves.size());
+    assertSame(firstSave, flushedSaves.get(0).result());
+    assertSame(latestSave, flushedSaves.get(1).result());
+    assertSame(latest, this.queue.findPending("player"));
+
+    this.repository.completeAll();
+    flusher.join();
+    assertTrue(firstSave.join().wasSaved());
+    assertTrue(latestSave.join().wasSaved());
+    assertNull(this.queue.findPending("player"));
+  }
+
+  @Test
+  void savesAreWrittenDirectlyOnceClosed() {
+    this.queue = this.startedQueue(16);
+    this.queue.close();
+    assertTrue(this.queue.enqueue(player("player")).join().wasSaved());
+    assertEquals(0, this.queue.pendingCount());
+    assertEquals(1, this.repository.directSaves);
+  }
+
+  private @NotNull AggregateRootWriteBehindQueue<PlayerAggregateRoot> startedQueue(final int batchSize) {
+    final AggregateRootWriteBehindQueue<PlayerAggregateRoot> queue = new AggregateRootWriteBehindQueue<>(this.repository, FLUSH_INTERVAL_MILLIS, batchSize);
+    queue.start();
+    return queue;
+  }
+
+  private static @NotNull PlayerAggregateRoot player(final @NotNull String id) {
+    return new PlayerAggregateRoot(new PlayerModelEntity(id, new HomeModelEntity[0]));
+  }
+
+  private static final class RecordingRepository implements AsyncAggregateRootRepository<PlayerAggregateRoot> {
+    private final List<List<PlayerAggregateRoot>> batches = new ArrayList<>();
+    // Batches written while completeImmediately is disabled, with the results they're completed with.
+    private final Map<CompletableFuture<List<AggregateRootSaveResult>>, List<AggregateRootSaveResult>> incompleteBatches = new LinkedHashMap<>();
+    private volatile boolean completeImmediately;
+    private int directSaves;
+
+    @Override
+    public @NotNull CompletableFuture<@Nullable PlayerAggregateRoot> findAsync(final @NotNull String id) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Boolean> existsAsync(final @NotNull String id) {
+      return CompletableFuture.completedFuture(false);
+    }
+
+    @Override
+    public synchronized @NotNull CompletableFuture<AggregateRootSaveResult> saveAsync(final @NotNull PlayerAggregateRoot aggregateRoot) {
+      this.directSaves++;
+      return CompletableFuture.completedFuture(AggregateRootSaveResult.saved());
+    }
+
+    @Override
+    public synchronized @NotNull CompletableFuture<List<AggregateRootSaveResult>> saveAllAsync(final @NotNull List<PlayerAggregateRoot> aggregateRoots) {
+      this.batches.add(List.copyOf(aggregateRoots));
+      final List<AggregateRootSaveResult> results = new ArrayList<>(aggregateRoots.size());
+      for (int i = 0; i < aggregateRoots.size(); i++) {
+        results.add(AggregateRootSaveResult.saved());
+      }
+      if (this.completeImmediately) {
+        return CompletableFuture.completedFuture(results);
+      }
+      final CompletableFuture<List<AggregateRootSaveResult>> batch = new CompletableFuture<>();
+      this.incompleteBatches.put(batch, results);
+      return batch;
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Boolean> deleteAsync(final @NotNull String id) {
+      return CompletableFuture.completedFuture(false);
+    }
+
+    private synchronized int batchCount() {
+      return this.batches.size();
+    }
+
+    private void completeAll() {
+      final Map<CompletableFuture<List<AggregateRootSaveResult>>, List<AggregateRootSaveResult>> incompleteBatches;
+      synchronized (this) {
+        incompleteBatches = new LinkedHashMap<>(this.incompleteBatches);
+        this.incompleteBatches.clear();
+      }
+      incompleteBatches.forEach(CompletableFuture::complete);
+    }
+  }
+}
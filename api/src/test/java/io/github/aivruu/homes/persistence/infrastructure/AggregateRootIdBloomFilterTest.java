@@ -0,0 +1,90 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class AggregateRootIdBloomFilterTest {
+  @Test
+  void addedIdsAreAlwaysReported() {
+    final AggregateRootIdBloomFilter bloomFilter = new AggregateRootIdBloomFilter(0);
+    final List<String> ids = new ArrayList<>();
+    // More ids than the filter is sized for, so its false-positive rate grows but it never misses any id.
+    for (int i = 0; i < AggregateRootIdBloomFilter.MIN_EXPECTED_IDS * 2; i++) {
+      final String id = UUID.randomUUID().toString();
+      ids.add(id);
+      bloomFilter.add(id);
+    }
+    for (final String id : ids) {
+      assertTrue(bloomFilter.mightContain(id), id);
+    }
+  }
+
+  @Test
+  void idsAddedConcurrentlyAreAlwaysReported() {
+    final AggregateRootIdBloomFilter bloomFilter = new AggregateRootIdBloomFilter(0);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<CompletableFuture<List<String>>> additions = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        additions.add(CompletableFuture.supplyAsync(() -> {
+          final List<String> ids = new ArrayList<>();
+          for (int i = 0; i < 10_000; i++) {
+            final String id = UUID.randomUUID().toString();
+            ids.add(id);
+            bloomFilter.add(id);
+          }
+          return ids;
+        }, executor));
+      }
+      for (final CompletableFuture<List<String>> addition : additions) {
+        for (final String id : addition.join()) {
+          assertTrue(bloomFilter.mightContain(id), id);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void mostNotAddedIdsAreReportedAsNotStored() {
+    final AggregateRootIdBloomFilter bloomFilter = new AggregateRootIdBloomFilter(0);
+    for (int i = 0; i < 10_000; i++) {
+      bloomFilter.add(UUID.randomUUID().toString());
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (bloomFilter.mightContain(UUID.randomUUID().toString())) {
+        falsePositives++;
+      }
+    }
+    // Sized for far more ids than added, so false-positives must be well below the configured rate.
+    assertTrue(falsePositives < 100, "False-positives: " + falsePositives);
+    assertFalse(bloomFilter.mightContain("never-added"));
+  }
+}
@@ -0,0 +1,123 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class AggregateRootKeyedExecutorTest {
+  private final AggregateRootKeyedExecutor keyedExecutor = new AggregateRootKeyedExecutor();
+
+  @Test
+  void operationsOfTheSameIdRunInSubmissionOrder() {
+    final CompletableFuture<Void> firstOperation = new CompletableFuture<>();
+    final AtomicBoolean secondStarted = new AtomicBoolean();
+    this.keyedExecutor.submit("player", () -> firstOperation);
+    final CompletableFuture<Void> secondOperation = this.keyedExecutor.submit("player", () -> {
+      secondStarted.set(true);
+      return CompletableFuture.completedFuture(null);
+    });
+    assertFalse(secondStarted.get());
+
+    firstOperation.complete(null);
+    secondOperation.join();
+    assertTrue(secondStarted.get());
+  }
+
+  @Test
+  void operationsOfOtherIdsDontWait() {
+    this.keyedExecutor.submit("first", CompletableFuture::new);
+    final AtomicBoolean started = new AtomicBoolean();
+    this.keyedExecutor.submit("second", () -> {
+      started.set(true);
+      return CompletableFuture.completedFuture(null);
+    });
+    assertTrue(started.get());
+  }
+
+  @Test
+  void operationsOfSeveralIdsWaitForAllOfThem() {
+    final CompletableFuture<Void> firstOperation = new CompletableFuture<>();
+    final CompletableFuture<Void> secondOperation = new CompletableFuture<>();
+    this.keyedExecutor.submit("first", () -> firstOperation);
+    this.keyedExecutor.submit("second", () -> secondOperation);
+    final AtomicBoolean started = new AtomicBoolean();
+    final CompletableFuture<Void> batchOperation = this.keyedExecutor.submit(List.of("first", "second"), () -> {
+      started.set(true);
+      return CompletableFuture.completedFuture(null);
+    });
+
+    firstOperation.complete(null);
+    assertFalse(started.get());
+    secondOperation.complete(null);
+    batchOperation.join();
+    assertTrue(started.get());
+  }
+
+  @Test
+  void failedOperationsDontBlockTheNextOnes() {
+    final CompletableFuture<Void> failedOperation = this.keyedExecutor.submit("player", () -> {
+      throw new IllegalStateException("Failed before starting.");
+    });
+    final CompletableFuture<Void> failingOperation = this.keyedExecutor.submit("player",
+      () -> CompletableFuture.failedFuture(new IllegalStateException("Failed while running.")));
+    final CompletableFuture<Integer> nextOperation = this.keyedExecutor.submit("player", () -> CompletableFuture.completedFuture(1));
+
+    assertThrows(CompletionException.class, failedOperation::join);
+    assertThrows(CompletionException.class, failingOperation::join);
+    assertEquals(1, nextOperation.join());
+  }
+
+  @Test
+  void concurrentSubmissionsRunOneAtATime() {
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final AtomicInteger running = new AtomicInteger();
+      final AtomicInteger maxRunning = new AtomicInteger();
+      final List<Integer> completedOperations = Collections.synchronizedList(new ArrayList<>());
+      final List<CompletableFuture<Void>> submissions = new ArrayList<>();
+      for (int i = 0; i < 1_000; i++) {
+        final int operation = i;
+        // Submitted from several threads, each operation is run by the executor once the previous one completed.
+        submissions.add(CompletableFuture.supplyAsync(() -> this.keyedExecutor.submit("player", () -> CompletableFuture.runAsync(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          completedOperations.add(operation);
+          running.decrementAndGet();
+        }, executor)), executor).thenCompose(submission -> submission));
+      }
+      CompletableFuture.allOf(submissions.toArray(CompletableFuture[]::new)).join();
+      assertEquals(1, maxRunning.get());
+      assertEquals(1_000, completedOperations.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class CircuitBreakerTest {
+  // Long enough for an opened circuit to never allow a probe during a test.
+  private static final long NEVER_PROBED_MILLIS = 60_000;
+
+  @Test
+  void staysClosedBelowTheFailureThreshold() {
+    final CircuitBreaker circuitBreaker = new CircuitBreaker(3, NEVER_PROBED_MILLIS);
+    circuitBreaker.recordFailure();
+    circuitBreaker.recordFailure();
+    assertTrue(circuitBreaker.isClosed());
+    // Failures must be consecutive to open the circuit.
+    circuitBreaker.recordSuccess();
+    circuitBreaker.recordFailure();
+    circuitBreaker.recordFailure();
+    assertTrue(circuitBreaker.isClosed());
+    assertTrue(circuitBreaker.allowsRequest());
+  }
+
+  @Test
+  void opensOnceTheFailureThresholdIsReached() {
+    final CircuitBreaker circuitBreaker = new CircuitBreaker(3, NEVER_PROBED_MILLIS);
+    for (int i = 0; i < 3; i++) {
+      circuitBreaker.recordFailure();
+    }
+    assertFalse(circuitBreaker.isClosed());
+    assertFalse(circuitBreaker.allowsRequest());
+  }
+
+  @Test
+  void allowsASingleProbeOnceOpenedLongEnough() {
+    final CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0);
+    circuitBreaker.recordFailure();
+    assertTrue(circuitBreaker.allowsRequest());
+    assertFalse(circuitBreaker.allowsRequest());
+
+    circuitBreaker.recordSuccess();
+    assertTrue(circuitBreaker.isClosed());
+    assertTrue(circuitBreaker.allowsRequest());
+    assertTrue(circuitBreaker.allowsRequest());
+  }
+
+  @Test
+  void failedProbeOpensTheCircuitAgain() throws InterruptedException {
+    final CircuitBreaker circuitBreaker = new CircuitBreaker(3, 100);
+    for (int i = 0; i < 3; i++) {
+      circuitBreaker.recordFailure();
+    }
+    Thread.sleep(150);
+    assertTrue(circuitBreaker.allowsRequest());
+
+    // A single failed probe is enough to open it again, for the whole open duration.
+    circuitBreaker.recordFailure();
+    assertFalse(circuitBreaker.isClosed());
+    assertFalse(circuitBreaker.allowsRequest());
+    Thread.sleep(150);
+    assertTrue(circuitBreaker.allowsRequest());
+  }
+
+  @Test
+  void releasedProbeIsTakenByTheNextRequest() {
+    final CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0);
+    circuitBreaker.recordFailure();
+    assertTrue(circuitBreaker.allowsRequest());
+    assertFalse(circuitBreaker.allowsRequest());
+
+    // The probe's outcome said nothing about the resource, so it's still opened.
+    circuitBreaker.release();
+    assertFalse(circuitBreaker.isClosed());
+    assertTrue(circuitBreaker.allowsRequest());
+  }
+
+  @Test
+  void releaseDoesNothingWhileClosed() {
+    final CircuitBreaker circuitBreaker = new CircuitBreaker(1, NEVER_PROBED_MILLIS);
+    circuitBreaker.release();
+    assertTrue(circuitBreaker.isClosed());
+    assertTrue(circuitBreaker.allowsRequest());
+  }
+}
@@ -25,6 +25,17 @@ subprojects {
     }
   }
 
+  dependencies {
+    "testImplementation"(platform(libs.junit.bom))
+    "testImplementation"(libs.junit.jupiter)
+    "testRuntimeOnly"(libs.junit.platform.launcher)
+  }
+
+  // Tests run against the same libraries the server provides at runtime.
+  configurations.named("testImplementation") {
+    extendsFrom(configurations.getByName("compileOnly"))
+  }
+
   spotless {
     java {
       licenseHeaderFile("$rootDir/header/header.txt")
@@ -46,5 +57,9 @@ subprojects {
     shadowJar {
       archiveBaseName.set(project.name)
     }
+
+    test {
+      useJUnitPlatform()
+    }
   }
 }
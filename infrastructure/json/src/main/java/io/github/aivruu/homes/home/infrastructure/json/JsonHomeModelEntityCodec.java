@@ -16,36 +16,46 @@
 // along with this program. If not, see <https://www.gnu.org/licenses/>.
 package io.github.aivruu.homes.home.infrastructure.json;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import io.github.aivruu.homes.home.domain.HomeModelEntity;
 import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
-public enum JsonHomeModelEntityCodec implements JsonSerializer<HomeModelEntity>, JsonDeserializer<HomeModelEntity> {
-  INSTANCE;
+public final class JsonHomeModelEntityCodec extends TypeAdapter<HomeModelEntity> {
+  public static final JsonHomeModelEntityCodec INSTANCE = new JsonHomeModelEntityCodec();
+
+  private JsonHomeModelEntityCodec() {}
 
   @Override
-  public @NotNull HomeModelEntity deserialize(final JsonElement json, final Type type, final JsonDeserializationContext ctx) throws JsonParseException {
-    final JsonObject jsonObject = json.getAsJsonObject();
-    return new HomeModelEntity(
-      jsonObject.get("id").getAsString(),
-      ctx.deserialize(jsonObject.get("position"), HomePositionValueObject.class)
-    );
+  public @NotNull HomeModelEntity read(final JsonReader reader) throws IOException {
+    String id = null;
+    HomePositionValueObject position = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "id" -> id = reader.nextString();
+        case "position" -> position = JsonHomePositionValueObjectCodec.INSTANCE.read(reader);
+        default -> reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (id == null || position == null) {
+      throw new JsonParseException("Home's id or position is missing at " + reader.getPath());
+    }
+    return new HomeModelEntity(id, position);
   }
 
   @Override
-  public @NotNull JsonElement serialize(final HomeModelEntity homeModel, final Type type, final JsonSerializationContext ctx) {
-    final JsonObject jsonObject = new JsonObject();
-    jsonObject.addProperty("id", homeModel.id());
-    jsonObject.add("position", ctx.serialize(homeModel.position(), HomePositionValueObject.class));
-    return jsonObject;
+  public void write(final JsonWriter writer, final HomeModelEntity homeModel) throws IOException {
+    writer.beginObject();
+    writer.name("id").value(homeModel.id());
+    writer.name("position");
+    JsonHomePositionValueObjectCodec.INSTANCE.write(writer, homeModel.position());
+    writer.endObject();
   }
 }
@@ -16,47 +16,49 @@
 // along with this program. If not, see <https://www.gnu.org/licenses/>.
 package io.github.aivruu.homes.home.infrastructure.json;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
-public enum JsonHomePositionValueObjectCodec implements JsonSerializer<HomePositionValueObject>, JsonDeserializer<HomePositionValueObject> {
-  INSTANCE;
+public final class JsonHomePositionValueObjectCodec extends TypeAdapter<HomePositionValueObject> {
+  public static final JsonHomePositionValueObjectCodec INSTANCE = new JsonHomePositionValueObjectCodec();
+
+  private JsonHomePositionValueObjectCodec() {}
 
   @Override
-  public @NotNull HomePositionValueObject deserialize(final JsonElement json, final Type type, final JsonDeserializationContext ctx) throws JsonParseException {
-    final JsonObject jsonObject = json.getAsJsonObject();
-    final String worldName = jsonObject.get("world").getAsString();
-    return new HomePositionValueObject(
-      worldName.equals("unknown") ? null : Bukkit.getWorld(worldName),
-      jsonObject.get("x").getAsInt(),
-      jsonObject.get("y").getAsInt(),
-      jsonObject.get("z").getAsInt()
-    );
+  public @NotNull HomePositionValueObject read(final JsonReader reader) throws IOException {
+    String worldName = "unknown";
+    int x = 0;
+    int y = 0;
+    int z = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "world" -> worldName = reader.nextString();
+        case "x" -> x = reader.nextInt();
+        case "y" -> y = reader.nextInt();
+        case "z" -> z = reader.nextInt();
+        default -> reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return new HomePositionValueObject(worldName.equals("unknown") ? null : Bukkit.getWorld(worldName), x, y, z);
   }
 
   @Override
-  public @NotNull JsonElement serialize(final HomePositionValueObject position, final Type type, final JsonSerializationContext ctx) {
-    final JsonObject jsonObject = new JsonObject();
+  public void write(final JsonWriter writer, final HomePositionValueObject position) throws IOException {
     final World world = position.world();
-    if (world == null) {
-      jsonObject.addProperty("world", "unknown");
-    } else {
-      jsonObject.addProperty("world", world.getName());
-    }
-    jsonObject.addProperty("x", position.x());
-    jsonObject.addProperty("y", position.y());
-    jsonObject.addProperty("z", position.z());
-    return jsonObject;
+    writer.beginObject();
+    writer.name("world").value((world == null) ? "unknown" : world.getName());
+    writer.name("x").value(position.x());
+    writer.name("y").value(position.y());
+    writer.name("z").value(position.z());
+    writer.endObject();
   }
 }
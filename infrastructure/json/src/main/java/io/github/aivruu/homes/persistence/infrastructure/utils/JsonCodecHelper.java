@@ -19,6 +19,7 @@ package io.github.aivruu.homes.persistence.infrastructure.utils;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
 import io.github.aivruu.homes.aggregate.domain.AggregateRoot;
 import io.github.aivruu.homes.home.domain.HomeModelEntity;
 import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
@@ -29,18 +30,23 @@ import io.github.aivruu.homes.player.infrastructure.json.codec.JsonPlayerAggrega
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 public final class JsonCodecHelper {
   private static final Gson GSON = new GsonBuilder()
     .registerTypeAdapter(PlayerAggregateRoot.class, JsonPlayerAggregateRootCodec.INSTANCE)
     .registerTypeAdapter(HomeModelEntity.class, JsonHomeModelEntityCodec.INSTANCE)
     .registerTypeAdapter(HomePositionValueObject.class, JsonHomePositionValueObjectCodec.INSTANCE)
-    .setPrettyPrinting()
     .create();
 
   private JsonCodecHelper() {
@@ -48,19 +54,86 @@ public final class JsonCodecHelper {
   }
 
   public static <A extends AggregateRoot> @Nullable A read(final @NotNull Path file, final @NotNull Class<A> aggregateRootClass) {
+    try {
+      return readOrThrow(file, aggregateRootClass);
+    } catch (final IOException exception) {
+      return null;
+    }
+  }
+
+  // Unlike read, failures are thrown, so a file that couldn't be read isn't mistaken for a missing one.
+  public static <A extends AggregateRoot> @Nullable A readOrThrow(final @NotNull Path file, final @NotNull Class<A> aggregateRootClass) throws IOException {
     try (final Reader reader = Files.newBufferedReader(file)) {
       return GSON.fromJson(reader, aggregateRootClass);
-    } catch (final IOException exception) {
+    }
+  }
+
+  // The temporary-file is placed next to the target-file, so the target-file is never truncated or half-written.
+  private static <A extends AggregateRoot> @Nullable Path writeTemporary(
+    final @NotNull Path file,
+    final @NotNull A aggregateRoot,
+    final boolean prettyPrinting
+  ) {
+    Path temporaryFile = null;
+    try {
+      temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (final FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE);
+           final JsonWriter writer = new JsonWriter(new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8)))) {
+        if (prettyPrinting) {
+          writer.setIndent("  ");
+        }
+        // The registered type-adapters stream the aggregate-root directly, without an intermediate json-tree.
+        GSON.toJson(aggregateRoot, aggregateRoot.getClass(), writer);
+        writer.flush();
+        // Contents must reach the device before the rename, otherwise a crash could expose an empty file.
+        channel.force(true);
+      }
+      return temporaryFile;
+    } catch (final IOException | JsonIOException exception) {
+      deleteQuietly(temporaryFile);
       return null;
     }
   }
 
-  public static <A extends AggregateRoot> boolean write(final @NotNull Path file, final @NotNull A aggregateRoot) {
-    try (final Writer writer = Files.newBufferedWriter(file)) {
-      GSON.toJson(aggregateRoot, writer);
+  private static boolean commit(final @NotNull Path temporaryFile, final @NotNull Path file) {
+    try {
+      try {
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (final AtomicMoveNotSupportedException exception) {
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
       return true;
-    } catch (final IOException | JsonIOException exception) {
+    } catch (final IOException exception) {
+      deleteQuietly(temporaryFile);
       return false;
     }
   }
+
+  public static <A extends AggregateRoot> boolean write(final @NotNull Path file, final @NotNull A aggregateRoot, final boolean prettyPrinting) {
+    final Path temporaryFile = writeTemporary(file, aggregateRoot, prettyPrinting);
+    if (temporaryFile == null || !commit(temporaryFile, file)) {
+      return false;
+    }
+    syncDirectory(file.getParent());
+    return true;
+  }
+
+  private static void syncDirectory(final @NotNull Path directory) {
+    try (final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (final IOException exception) {
+      // Not supported on this platform (i.e. Windows), renames are still atomic.
+    }
+  }
+
+  public static void deleteQuietly(final @Nullable Path file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(file);
+    } catch (final IOException ignored) {
+      // Leftover temporary-files are removed on next start-up.
+    }
+  }
 }
@@ -17,82 +17,292 @@
 package io.github.aivruu.homes.player.infrastructure.json;
 
 import io.github.aivruu.homes.persistence.domain.InfrastructureAggregateRootRepository;
+import io.github.aivruu.homes.persistence.infrastructure.AggregateRootIdBloomFilter;
 import io.github.aivruu.homes.persistence.infrastructure.ExecutorHelper;
 import io.github.aivruu.homes.persistence.infrastructure.utils.JsonCodecHelper;
 import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 public final class PlayerJsonInfrastructureAggregateRootRepository extends InfrastructureAggregateRootRepository<PlayerAggregateRoot> {
+  // Files are stored at 'players/<first two id's chars>/<next two id's chars>/<id>.json'.
+  private static final int SHARDS_DEPTH = 2;
   private final Path directory;
+  private final boolean prettyPrinting;
+  private final Map<String, Long> storedVersions = new ConcurrentHashMap<>();
+  private AggregateRootIdBloomFilter storedIds;
+  // Whether files from the old flat-layout could still exist at the root-directory.
+  private volatile boolean migrating;
+  private volatile boolean closed;
 
-  public PlayerJsonInfrastructureAggregateRootRepository(final @NotNull Path directory) {
+  public PlayerJsonInfrastructureAggregateRootRepository(
+    final @NotNull Path directory,
+    final boolean prettyPrinting
+  ) {
     super(ExecutorHelper.pool());
     this.directory = directory;
+    this.prettyPrinting = prettyPrinting;
   }
 
   @Override
   public boolean start() {
-    if (Files.exists(this.directory)) {
+    try {
+      if (Files.notExists(this.directory)) {
+        Files.createDirectory(this.directory);
+      }
+      this.deleteTemporaryFiles();
+      this.storedIds = this.loadStoredIds();
+      this.migrating = this.hasFlatFiles();
+      if (this.migrating) {
+        final Thread migrationThread = new Thread(this::migrateFlatFiles, "Homes-Json-Layout-Migration");
+        migrationThread.setDaemon(true);
+        migrationThread.start();
+      }
       return true;
+    } catch (final IOException exception) {
+      return false;
+    }
+  }
+
+  private void deleteTemporaryFiles() throws IOException {
+    // Left by writes that were interrupted before being moved into place, target-files are still intact.
+    try (final Stream<Path> files = Files.walk(this.directory, SHARDS_DEPTH + 1)) {
+      files.filter(file -> file.getFileName().toString().endsWith(".tmp")).forEach(JsonCodecHelper::deleteQuietly);
+    }
+  }
+
+  private @NotNull AggregateRootIdBloomFilter loadStoredIds() throws IOException {
+    final long storedFiles;
+    try (final Stream<Path> files = Files.walk(this.directory, SHARDS_DEPTH + 1)) {
+      storedFiles = files.count();
     }
+    final AggregateRootIdBloomFilter bloomFilter = new AggregateRootIdBloomFilter(storedFiles);
+    try (final Stream<Path> files = Files.walk(this.directory, SHARDS_DEPTH + 1)) {
+      files.forEach(file -> {
+        final String fileName = file.getFileName().toString();
+        if (fileName.endsWith(".json")) {
+          bloomFilter.add(fileName.substring(0, fileName.length() - 5));
+        }
+      });
+    }
+    return bloomFilter;
+  }
+
+  private boolean hasFlatFiles() throws IOException {
+    try (final DirectoryStream<Path> flatFiles = Files.newDirectoryStream(this.directory, "*.json")) {
+      return flatFiles.iterator().hasNext();
+    }
+  }
+
+  private void migrateFlatFiles() {
+    // Every step can be repeated safely, so an interrupted migration is resumed on next start-up.
+    try (final DirectoryStream<Path> flatFiles = Files.newDirectoryStream(this.directory, "*.json")) {
+      for (final Path flatFile : flatFiles) {
+        if (this.closed) {
+          return;
+        }
+        final String fileName = flatFile.getFileName().toString();
+        final String id = fileName.substring(0, fileName.length() - 5);
+        // Ordered with the player's saves and deletions, so a move never races with their writes.
+        if (!super.ordered(id, () -> CompletableFuture.completedFuture(this.migrateFlatFile(flatFile, this.shardedFileOf(id)))).join()) {
+          return;
+        }
+      }
+      this.migrating = false;
+    } catch (final IOException | CompletionException ignored) {
+      // Pending flat-files are still found by look-ups, and migrated on next start-up.
+    }
+  }
+
+  private boolean migrateFlatFile(final @NotNull Path flatFile, final @NotNull Path shardedFile) {
     try {
-      Files.createDirectory(this.directory);
-      return true;
+      if (Files.exists(shardedFile)) {
+        // The player was saved with the sharded-layout meanwhile, so the flat-file is outdated.
+        JsonCodecHelper.deleteQuietly(flatFile);
+        return true;
+      }
+      Files.createDirectories(shardedFile.getParent());
+      Files.move(flatFile, shardedFile);
+    } catch (final FileAlreadyExistsException exception) {
+      JsonCodecHelper.deleteQuietly(flatFile);
+    } catch (final NoSuchFileException ignored) {
+      // The player was deleted meanwhile.
     } catch (final IOException exception) {
       return false;
     }
+    return true;
+  }
+
+  private @NotNull Path shardedFileOf(final @NotNull String id) {
+    Path shard = this.directory;
+    for (int depth = 0; depth < SHARDS_DEPTH && (depth * 2 + 2) <= id.length(); depth++) {
+      shard = shard.resolve(id.substring(depth * 2, depth * 2 + 2));
+    }
+    return shard.resolve(id + ".json");
+  }
+
+  private @NotNull Path flatFileOf(final @NotNull String id) {
+    return this.directory.resolve(id + ".json");
+  }
+
+  private @Nullable Path fileOf(final @NotNull String id) {
+    final Path shardedFile = this.shardedFileOf(id);
+    if (Files.exists(shardedFile)) {
+      return shardedFile;
+    }
+    if (!this.migrating) {
+      return null;
+    }
+    final Path flatFile = this.flatFileOf(id);
+    if (Files.exists(flatFile)) {
+      return flatFile;
+    }
+    // The file could have been migrated between both checks.
+    return Files.exists(shardedFile) ? shardedFile : null;
   }
 
   @Override
-  public void close() {}
+  public void close() {
+    this.closed = true;
+  }
 
   @Override
   public @NotNull CompletableFuture<@Nullable PlayerAggregateRoot> findAsync(final @NotNull String id) {
-    return CompletableFuture.supplyAsync(() -> {
-      final Path file = this.directory.resolve(id + ".json");
-      return Files.notExists(file) ? null : JsonCodecHelper.read(file, PlayerAggregateRoot.class);
-    }, super.executor);
+    // Players that were never stored don't need a disk look-up.
+    if (!this.storedIds.mightContain(id)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return super.ordered(id, () -> CompletableFuture.supplyAsync(() -> {
+      final Path file = this.fileOf(id);
+      if (file == null) {
+        return null;
+      }
+      final PlayerAggregateRoot playerAggregateRoot = JsonCodecHelper.read(file, PlayerAggregateRoot.class);
+      // The flat-file could have been migrated while opening it.
+      return (playerAggregateRoot == null && this.migrating && Files.notExists(file))
+        ? JsonCodecHelper.read(this.shardedFileOf(id), PlayerAggregateRoot.class)
+        : playerAggregateRoot;
+    }, super.executor));
   }
 
   @Override
   public @NotNull CompletableFuture<Boolean> existsAsync(final @NotNull String id) {
-    return CompletableFuture.supplyAsync(() -> Files.exists(this.directory.resolve(id + ".json")), super.executor);
+    if (!this.storedIds.mightContain(id)) {
+      return CompletableFuture.completedFuture(false);
+    }
+    return super.ordered(id, () -> CompletableFuture.supplyAsync(() -> this.fileOf(id) != null, super.executor));
   }
 
   @Override
-  public @NotNull CompletableFuture<Boolean> saveAsync(final @NotNull PlayerAggregateRoot aggregateRoot) {
-    return CompletableFuture.supplyAsync(() -> {
-      final Path file = this.directory.resolve(aggregateRoot.id() + ".json");
-      if (Files.notExists(file)) {
-        try {
-          Files.createFile(file);
-        } catch (final IOException exception) {
-          return false;
+  public @NotNull CompletableFuture<AggregateRootSaveResult> saveAsync(final @NotNull PlayerAggregateRoot aggregateRoot) {
+    this.storedIds.add(aggregateRoot.id());
+    // Captured on the caller's thread, so the written state matches the version being saved.
+    final PlayerAggregateRoot.Saving saving = aggregateRoot.beginSaving();
+    // Ordered until the file is written, so a save is never read or deleted before being written.
+    return super.ordered(aggregateRoot.id(), () -> CompletableFuture.supplyAsync(() -> this.compareAndSetVersion(saving), super.executor)
+        .thenCompose(versionMatched -> versionMatched
+          ? this.write(saving.state()).thenApply(wasSaved -> wasSaved ? AggregateRootSaveResult.saved() : AggregateRootSaveResult.error())
+          : CompletableFuture.completedFuture(AggregateRootSaveResult.conflict())))
+      .exceptionally(exception -> AggregateRootSaveResult.error())
+      .thenApply(result -> {
+        if (result.wasError()) {
+          this.storedVersions.replace(aggregateRoot.id(), saving.version(), saving.expectedVersion());
+        }
+        if (!result.wasSaved()) {
+          aggregateRoot.cancelSaving(saving.expectedVersion(), saving.version());
         }
+        return result;
+      });
+  }
+
+  private boolean compareAndSetVersion(final @NotNull PlayerAggregateRoot.Saving saving) {
+    final String id = saving.state().id();
+    // The file is read only by the first save of each player, next ones are compared against the last saved version.
+    // It's read outside the map, so the disk isn't accessed while holding the map's lock.
+    Long storedVersion = this.storedVersions.get(id);
+    if (storedVersion == null) {
+      storedVersion = this.readStoredVersion(id);
+      final Long cachedVersion = this.storedVersions.putIfAbsent(id, storedVersion);
+      if (cachedVersion != null) {
+        storedVersion = cachedVersion;
       }
-      return JsonCodecHelper.write(file, aggregateRoot);
-    }, super.executor);
+    }
+    if (storedVersion != NOT_STORED_VERSION && storedVersion != saving.expectedVersion()) {
+      return false;
+    }
+    return this.storedVersions.replace(id, storedVersion, saving.version());
+  }
+
+  // A file that exists but can't be read or decoded fails the save, instead of being overwritten as if it wasn't stored.
+  private long readStoredVersion(final @NotNull String id) {
+    final Path file = this.fileOf(id);
+    if (file == null) {
+      return NOT_STORED_VERSION;
+    }
+    final PlayerAggregateRoot playerAggregateRoot;
+    try {
+      playerAggregateRoot = JsonCodecHelper.readOrThrow(file, PlayerAggregateRoot.class);
+    } catch (final NoSuchFileException exception) {
+      return NOT_STORED_VERSION;
+    } catch (final IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    if (playerAggregateRoot == null) {
+      throw new UncheckedIOException(new IOException("The file " + file + " is empty."));
+    }
+    return playerAggregateRoot.version();
+  }
+
+  private @NotNull CompletableFuture<Boolean> write(final @NotNull PlayerAggregateRoot aggregateRoot) {
+    final Path file = this.shardedFileOf(aggregateRoot.id());
+    return CompletableFuture.supplyAsync(() -> this.createShard(file) && JsonCodecHelper.write(file, aggregateRoot, this.prettyPrinting), super.executor)
+      .thenApply(wasSaved -> this.deleteFlatFile(aggregateRoot.id(), wasSaved));
+  }
+
+  private boolean createShard(final @NotNull Path file) {
+    try {
+      Files.createDirectories(file.getParent());
+      return true;
+    } catch (final IOException exception) {
+      return false;
+    }
+  }
+
+  private boolean deleteFlatFile(final @NotNull String id, final boolean wasSaved) {
+    // An outdated not-migrated file must not be found by look-ups.
+    if (wasSaved && this.migrating) {
+      JsonCodecHelper.deleteQuietly(this.flatFileOf(id));
+    }
+    return wasSaved;
   }
 
   @Override
   public @NotNull CompletableFuture<Boolean> deleteAsync(final @NotNull String id) {
-    return CompletableFuture.supplyAsync(() -> {
-      final Path file = this.directory.resolve(id + ".json");
-      if (Files.notExists(file)) {
-        return false;
-      }
+    return super.ordered(id, () -> CompletableFuture.supplyAsync(() -> {
+      this.storedVersions.remove(id);
+      // The flat-file goes first, so the migration can't move it after the sharded-file is deleted.
+      final Path flatFile = this.flatFileOf(id);
+      final Path shardedFile = this.shardedFileOf(id);
       try {
-        Files.delete(file);
-        return true;
+        final boolean flatFileDeleted = Files.deleteIfExists(flatFile);
+        return Files.deleteIfExists(shardedFile) || flatFileDeleted;
       } catch (final IOException exception) {
         return false;
       }
-    }, super.executor);
+    }, super.executor));
   }
 }
@@ -16,49 +16,63 @@
 // along with this program. If not, see <https://www.gnu.org/licenses/>.
 package io.github.aivruu.homes.player.infrastructure.json.codec;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.infrastructure.json.JsonHomeModelEntityCodec;
 import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
 import io.github.aivruu.homes.player.domain.PlayerModelEntity;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-public enum JsonPlayerAggregateRootCodec implements JsonSerializer<PlayerAggregateRoot>, JsonDeserializer<PlayerAggregateRoot> {
-  INSTANCE;
+public final class JsonPlayerAggregateRootCodec extends TypeAdapter<PlayerAggregateRoot> {
+  public static final JsonPlayerAggregateRootCodec INSTANCE = new JsonPlayerAggregateRootCodec();
+
+  private JsonPlayerAggregateRootCodec() {}
 
   @Override
-  public @NotNull PlayerAggregateRoot deserialize(final JsonElement json, final Type type, final JsonDeserializationContext ctx) throws JsonParseException {
-    final JsonObject jsonObject = json.getAsJsonObject();
-    final List<HomeModelEntity> homesList = new ArrayList<>();
-    for (final JsonElement homeElement : jsonObject.getAsJsonArray("homes")) {
-      homesList.add(ctx.deserialize(homeElement, HomeModelEntity.class));
+  public @NotNull PlayerAggregateRoot read(final JsonReader reader) throws IOException {
+    String id = null;
+    long version = 0;
+    final List<HomeModelEntity> homesList = new ArrayList<>(PlayerAggregateRoot.MAX_PLAYER_HOMES_ALLOWED);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "id" -> id = reader.nextString();
+        case "version" -> version = reader.nextLong();
+        case "homes" -> {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            homesList.add(JsonHomeModelEntityCodec.INSTANCE.read(reader));
+          }
+          reader.endArray();
+        }
+        default -> reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (id == null) {
+      throw new JsonParseException("Player's id is missing at " + reader.getPath());
     }
-    return new PlayerAggregateRoot(
-      new PlayerModelEntity(jsonObject.get("id").getAsString(), homesList.toArray(HomeModelEntity[]::new))
-    );
+    return new PlayerAggregateRoot(new PlayerModelEntity(id, homesList.toArray(HomeModelEntity[]::new)), version);
   }
 
   @Override
-  public @NotNull JsonElement serialize(final PlayerAggregateRoot playerAggregateRoot, final Type type, final JsonSerializationContext ctx) {
-    final JsonObject jsonObject = new JsonObject();
-    jsonObject.addProperty("id", playerAggregateRoot.id());
-    final HomeModelEntity[] homes = playerAggregateRoot.homes();
-    final JsonArray jsonArray = new JsonArray(homes.length);
-    for (final HomeModelEntity homeModel : homes) {
+  public void write(final JsonWriter writer, final PlayerAggregateRoot playerAggregateRoot) throws IOException {
+    writer.beginObject();
+    writer.name("id").value(playerAggregateRoot.id());
+    writer.name("version").value(playerAggregateRoot.version());
+    writer.name("homes").beginArray();
+    for (final HomeModelEntity homeModel : playerAggregateRoot.homes()) {
       if (homeModel == null) continue;
-      jsonArray.add(ctx.serialize(homeModel, HomeModelEntity.class));
+      JsonHomeModelEntityCodec.INSTANCE.write(writer, homeModel);
     }
-    jsonObject.add("homes", jsonArray);
-    return jsonObject;
+    writer.endArray();
+    writer.endObject();
   }
 }
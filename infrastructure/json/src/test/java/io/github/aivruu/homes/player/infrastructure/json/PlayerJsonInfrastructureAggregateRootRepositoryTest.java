@@ -0,0 +1,108 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.json;
+
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
+import io.github.aivruu.homes.persistence.infrastructure.ExecutorHelper;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class PlayerJsonInfrastructureAggregateRootRepositoryTest {
+  @TempDir
+  Path directory;
+  private PlayerJsonInfrastructureAggregateRootRepository repository;
+
+  @BeforeEach
+  void createPool() {
+    ExecutorHelper.createPool(2);
+  }
+
+  @AfterEach
+  void close() {
+    if (this.repository != null) {
+      this.repository.close();
+    }
+    ExecutorHelper.shutdown(1000);
+  }
+
+  @Test
+  void notStoredPlayerIsWritten() {
+    this.repository = this.startedRepository();
+    final PlayerAggregateRoot playerAggregateRoot = player("player");
+    playerAggregateRoot.addHome(home("home"));
+
+    assertTrue(this.repository.saveAsync(playerAggregateRoot).join().wasSaved());
+    final PlayerAggregateRoot storedPlayerAggregateRoot = this.repository.findAsync("player").join();
+    assertNotNull(storedPlayerAggregateRoot);
+    assertEquals(1, storedPlayerAggregateRoot.version());
+    assertNotNull(storedPlayerAggregateRoot.home("home"));
+  }
+
+  @Test
+  void saveOverAnotherVersionConflicts() {
+    this.repository = this.startedRepository();
+    final PlayerAggregateRoot playerAggregateRoot = player("player");
+    playerAggregateRoot.addHome(home("home"));
+    assertTrue(this.repository.saveAsync(playerAggregateRoot).join().wasSaved());
+
+    // Loaded before the previous save was stored.
+    final PlayerAggregateRoot outdatedPlayerAggregateRoot = player("player");
+    outdatedPlayerAggregateRoot.addHome(home("other"));
+    assertTrue(this.repository.saveAsync(outdatedPlayerAggregateRoot).join().wasConflict());
+  }
+
+  @Test
+  void unreadableFileIsNotOverwritten() throws IOException {
+    final Path file = this.directory.resolve("players").resolve("pl").resolve("ay").resolve("player.json");
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, "{\"id\": \"player\", \"homes\": [");
+    this.repository = this.startedRepository();
+    final PlayerAggregateRoot playerAggregateRoot = player("player");
+    playerAggregateRoot.addHome(home("home"));
+
+    assertTrue(this.repository.saveAsync(playerAggregateRoot).join().wasError());
+    assertEquals("{\"id\": \"player\", \"homes\": [", Files.readString(file));
+  }
+
+  private @NotNull PlayerJsonInfrastructureAggregateRootRepository startedRepository() {
+    final PlayerJsonInfrastructureAggregateRootRepository repository = new PlayerJsonInfrastructureAggregateRootRepository(this.directory.resolve("players"), false);
+    assertTrue(repository.start());
+    return repository;
+  }
+
+  private static @NotNull PlayerAggregateRoot player(final @NotNull String id) {
+    return new PlayerAggregateRoot(new PlayerModelEntity(id, new HomeModelEntity[0]));
+  }
+
+  private static @NotNull HomeModelEntity home(final @NotNull String id) {
+    return new HomeModelEntity(id, new HomePositionValueObject(null, 1, 64, 2));
+  }
+}
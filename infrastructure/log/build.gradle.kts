@@ -0,0 +1,5 @@
+dependencies {
+  api(project(":${rootProject.name}-api"))
+
+  compileOnlyApi(libs.annotations)
+}
\ No newline at end of file
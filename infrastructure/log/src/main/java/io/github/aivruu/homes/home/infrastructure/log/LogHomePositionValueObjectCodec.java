@@ -0,0 +1,50 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.home.infrastructure.log;
+
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
+import io.github.aivruu.homes.persistence.infrastructure.utils.LogCodecHelper;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public final class LogHomePositionValueObjectCodec {
+  public static final LogHomePositionValueObjectCodec INSTANCE = new LogHomePositionValueObjectCodec();
+
+  private LogHomePositionValueObjectCodec() {}
+
+  public @NotNull HomePositionValueObject decode(final @NotNull ByteBuffer buffer) throws IOException {
+    final String worldName = LogCodecHelper.readString(buffer);
+    return new HomePositionValueObject(
+      worldName.equals("unknown") ? null : Bukkit.getWorld(worldName),
+      buffer.getInt(),
+      buffer.getInt(),
+      buffer.getInt());
+  }
+
+  public void encode(final @NotNull DataOutput output, final @NotNull HomePositionValueObject position) throws IOException {
+    final World world = position.world();
+    LogCodecHelper.writeString(output, (world == null) ? "unknown" : world.getName());
+    output.writeInt(position.x());
+    output.writeInt(position.y());
+    output.writeInt(position.z());
+  }
+}
@@ -0,0 +1,430 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of checksummed records, where every save or delete of an aggregate-root is appended
+ * to the end of the file and an in-memory index points to the latest record of each id.
+ * <p>
+ * Records are stored as {@code [int body-length][int body-crc32][byte type][short id-length][id][payload]}.
+ * <p>
+ * When memory-mapping is enabled, records are read from a read-only mapping of the file, so reads served by
+ * the OS page-cache don't need any system-call. Records appended after the last mapping are read from the
+ * file-channel until the file is mapped again.
+ */
+public final class AggregateRootRecordLog {
+  private static final byte PUT_RECORD = 0;
+  private static final byte DELETE_RECORD = 1;
+  private static final int HEADER_BYTES = 8;
+  private static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+  // Files smaller than this aren't worth to be rewritten, even if most of their records are outdated.
+  private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+  // Appended bytes not covered by the mapping before the file is mapped again.
+  private static final long REMAP_BYTES = 1024 * 1024;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Object compactionLock = new Object();
+  private final Path file;
+  private final boolean syncWrites;
+  private final boolean memoryMapped;
+  private Map<String, RecordPosition> index = new HashMap<>();
+  private FileChannel channel;
+  private @Nullable MappedByteBuffer mappedRecords;
+  private long size;
+  private long liveBytes;
+
+  public AggregateRootRecordLog(final @NotNull Path file, final boolean syncWrites, final boolean memoryMapped) {
+    this.file = file;
+    this.syncWrites = syncWrites;
+    this.memoryMapped = memoryMapped;
+  }
+
+  public void open() throws IOException {
+    this.lock.writeLock().lock();
+    try {
+      Files.deleteIfExists(this.compactionFile());
+      this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      final Map<String, RecordPosition> index = new HashMap<>();
+      this.size = replay(this.channel, 0, index);
+      if (this.size < this.channel.size()) {
+        // A write was interrupted by a crash, the previous records are intact.
+        this.channel.truncate(this.size);
+        this.channel.force(true);
+      }
+      this.index = index;
+      this.liveBytes = liveBytesOf(index);
+      this.remap();
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  private static long replay(final @NotNull FileChannel channel, final long from, final @NotNull Map<String, RecordPosition> index) throws IOException {
+    final long end = channel.size();
+    // The stream isn't closed as it would close the channel too.
+    final DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(from)), 64 * 1024));
+    final CRC32 checksum = new CRC32();
+    long position = from;
+    while (end - position >= HEADER_BYTES) {
+      final int bodyLength = input.readInt();
+      final int expectedChecksum = input.readInt();
+      final long recordEnd = position + HEADER_BYTES + bodyLength;
+      if (bodyLength < 3 || bodyLength > MAX_BODY_BYTES || recordEnd > end) {
+        return checkTornRecord(position, bodyLength, recordEnd, end);
+      }
+      final byte[] body = new byte[bodyLength];
+      input.readFully(body);
+      checksum.reset();
+      checksum.update(body);
+      if ((int) checksum.getValue() != expectedChecksum) {
+        return checkTornRecord(position, bodyLength, recordEnd, end);
+      }
+      final ByteBuffer buffer = ByteBuffer.wrap(body);
+      final byte type = buffer.get();
+      final String id = LogCodecHelper.readString(buffer);
+      if (type == PUT_RECORD) {
+        index.put(id, new RecordPosition(position, HEADER_BYTES + bodyLength));
+      } else if (type == DELETE_RECORD) {
+        index.remove(id);
+      }
+      position = recordEnd;
+    }
+    return position;
+  }
+
+  private static long checkTornRecord(final long position, final int bodyLength, final long recordEnd, final long end) throws IOException {
+    // Only the last record can be half-written, the file's tail could also be zero-filled by the file-system.
+    if (bodyLength == 0 || recordEnd >= end) {
+      return position;
+    }
+    throw new IOException("Corrupted record found at offset " + position + ", the file must be repaired manually.");
+  }
+
+  private static long liveBytesOf(final @NotNull Map<String, RecordPosition> index) {
+    long liveBytes = 0;
+    for (final RecordPosition recordPosition : index.values()) {
+      liveBytes += recordPosition.length();
+    }
+    return liveBytes;
+  }
+
+  private @NotNull Path compactionFile() {
+    return this.file.resolveSibling(this.file.getFileName() + ".compact");
+  }
+
+  public boolean contains(final @NotNull String id) {
+    this.lock.readLock().lock();
+    try {
+      return this.index.containsKey(id);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  public @NotNull Set<String> ids() {
+    this.lock.readLock().lock();
+    try {
+      return Set.copyOf(this.index.keySet());
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  public int count() {
+    this.lock.readLock().lock();
+    try {
+      return this.index.size();
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  public @Nullable ByteBuffer read(final @NotNull String id) throws IOException {
+    this.lock.readLock().lock();
+    try {
+      final RecordPosition recordPosition = this.index.get(id);
+      if (recordPosition == null) {
+        return null;
+      }
+      final MappedByteBuffer mappedRecords = this.mappedRecords;
+      if (mappedRecords != null && recordPosition.offset() + recordPosition.length() <= mappedRecords.capacity()) {
+        // Absolute slices don't modify the shared buffer's state, so concurrent reads are safe.
+        return payloadOf(id, mappedRecords.slice((int) recordPosition.offset(), recordPosition.length()));
+      }
+      final ByteBuffer record = ByteBuffer.allocate(recordPosition.length());
+      long position = recordPosition.offset();
+      while (record.hasRemaining()) {
+        if (this.channel.read(record, position) < 0) {
+          throw new EOFException("Record of " + id + " exceeds the file's size.");
+        }
+        position = recordPosition.offset() + record.position();
+      }
+      return payloadOf(id, record.flip());
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  private static @NotNull ByteBuffer payloadOf(final @NotNull String id, final @NotNull ByteBuffer record) throws IOException {
+    final int bodyLength = record.getInt();
+    final int expectedChecksum = record.getInt();
+    final CRC32 checksum = new CRC32();
+    checksum.update(record.duplicate().limit(record.position() + bodyLength));
+    if ((int) checksum.getValue() != expectedChecksum) {
+      throw new IOException("Checksum mismatch for the record of " + id);
+    }
+    record.get();
+    LogCodecHelper.readString(record);
+    return record.slice();
+  }
+
+  public void put(final @NotNull String id, final byte @NotNull [] payload) throws IOException {
+    this.lock.writeLock().lock();
+    try {
+      this.append(PUT_RECORD, id, payload);
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  public boolean delete(final @NotNull String id) throws IOException {
+    this.lock.writeLock().lock();
+    try {
+      if (!this.index.containsKey(id)) {
+        return false;
+      }
+      this.append(DELETE_RECORD, id, new byte[0]);
+      return true;
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  private void append(final byte type, final @NotNull String id, final byte @NotNull [] payload) throws IOException {
+    final ByteBuffer record = encodeRecord(type, id, payload);
+    final int length = record.remaining();
+    try {
+      long position = this.size;
+      while (record.hasRemaining()) {
+        position += this.channel.write(record, position);
+      }
+      if (this.syncWrites) {
+        this.channel.force(false);
+      }
+    } catch (final IOException exception) {
+      // Drops any partially written bytes, so the next record is appended right after the last complete one.
+      try {
+        this.channel.truncate(this.size);
+      } catch (final IOException ignored) {}
+      throw exception;
+    }
+    final RecordPosition previous = (type == PUT_RECORD)
+      ? this.index.put(id, new RecordPosition(this.size, length))
+      : this.index.remove(id);
+    if (previous != null) {
+      this.liveBytes -= previous.length();
+    }
+    if (type == PUT_RECORD) {
+      this.liveBytes += length;
+    }
+    this.size += length;
+    final MappedByteBuffer mappedRecords = this.mappedRecords;
+    if (this.memoryMapped && (this.size - ((mappedRecords == null) ? 0 : mappedRecords.capacity())) >= REMAP_BYTES) {
+      this.remap();
+    }
+  }
+
+  private void remap() {
+    if (!this.memoryMapped) {
+      return;
+    }
+    try {
+      // Larger files can't be mapped by a single buffer, records beyond the mapping are read from the channel.
+      this.mappedRecords = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(this.size, Integer.MAX_VALUE));
+    } catch (final IOException exception) {
+      // Records are read from the channel until the file can be mapped again.
+      this.mappedRecords = null;
+    }
+  }
+
+  private static @NotNull ByteBuffer encodeRecord(final byte type, final @NotNull String id, final byte @NotNull [] payload) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES + 3 + id.length() + payload.length);
+    final DataOutputStream output = new DataOutputStream(bytes);
+    // Header is filled once the body's length and checksum are known.
+    output.writeLong(0);
+    output.writeByte(type);
+    LogCodecHelper.writeString(output, id);
+    output.write(payload);
+    final ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+    final int bodyLength = record.capacity() - HEADER_BYTES;
+    if (bodyLength > MAX_BODY_BYTES) {
+      throw new IOException("Record of " + id + " exceeds the max record's size: " + bodyLength + " bytes");
+    }
+    final CRC32 checksum = new CRC32();
+    checksum.update(record.array(), HEADER_BYTES, bodyLength);
+    record.putInt(0, bodyLength);
+    record.putInt(4, (int) checksum.getValue());
+    return record;
+  }
+
+  public boolean needsCompaction() {
+    this.lock.readLock().lock();
+    try {
+      return this.size >= MIN_COMPACTION_BYTES && (this.size - this.liveBytes) > this.liveBytes;
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Rewrites the file with only the latest record of each stored id. Live records are copied without
+   * blocking reads or writes, only the records appended meanwhile are copied while holding the lock.
+   */
+  public boolean compact() throws IOException {
+    synchronized (this.compactionLock) {
+      final Map<String, RecordPosition> liveRecords;
+      final FileChannel channel;
+      final long copiedSize;
+      this.lock.readLock().lock();
+      try {
+        liveRecords = new HashMap<>(this.index);
+        channel = this.channel;
+        copiedSize = this.size;
+      } finally {
+        this.lock.readLock().unlock();
+      }
+      final Path compactionFile = this.compactionFile();
+      final FileChannel compactedChannel = FileChannel.open(compactionFile,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      boolean compacted = false;
+      try {
+        // Already appended records are never modified, so they can be copied concurrently.
+        final Map<String, RecordPosition> compactedIndex = new HashMap<>(liveRecords.size());
+        long compactedSize = 0;
+        for (final Map.Entry<String, RecordPosition> entry : liveRecords.entrySet()) {
+          final RecordPosition recordPosition = entry.getValue();
+          transfer(channel, recordPosition.offset(), recordPosition.length(), compactedChannel, compactedSize);
+          compactedIndex.put(entry.getKey(), new RecordPosition(compactedSize, recordPosition.length()));
+          compactedSize += recordPosition.length();
+        }
+        this.lock.writeLock().lock();
+        try {
+          if (this.channel != channel || !channel.isOpen()) {
+            return false;
+          }
+          final long appendedBytes = this.size - copiedSize;
+          if (appendedBytes > 0) {
+            transfer(channel, copiedSize, appendedBytes, compactedChannel, compactedSize);
+            compactedSize = replay(compactedChannel, compactedSize, compactedIndex);
+          }
+          compactedChannel.force(true);
+          try {
+            Files.move(compactionFile, this.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+          } catch (final AtomicMoveNotSupportedException exception) {
+            Files.move(compactionFile, this.file, StandardCopyOption.REPLACE_EXISTING);
+          }
+          syncDirectory(this.file.toAbsolutePath().getParent());
+          this.channel = compactedChannel;
+          this.index = compactedIndex;
+          this.size = compactedSize;
+          this.liveBytes = liveBytesOf(compactedIndex);
+          compacted = true;
+          this.remap();
+        } finally {
+          this.lock.writeLock().unlock();
+        }
+        channel.close();
+        return true;
+      } finally {
+        if (!compacted) {
+          compactedChannel.close();
+          Files.deleteIfExists(compactionFile);
+        }
+      }
+    }
+  }
+
+  private static void transfer(
+    final @NotNull FileChannel source,
+    final long position,
+    final long length,
+    final @NotNull FileChannel target,
+    final long targetPosition
+  ) throws IOException {
+    long transferred = 0;
+    while (transferred < length) {
+      final long count = source.transferTo(position + transferred, length - transferred, target.position(targetPosition + transferred));
+      if (count <= 0) {
+        throw new EOFException("Record's bytes couldn't be copied from offset " + (position + transferred));
+      }
+      transferred += count;
+    }
+  }
+
+  private static void syncDirectory(final @Nullable Path directory) {
+    if (directory == null) {
+      return;
+    }
+    try (final FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      directoryChannel.force(true);
+    } catch (final IOException ignored) {
+      // Not supported by every platform, the file's content itself was already synced.
+    }
+  }
+
+  public void close() throws IOException {
+    synchronized (this.compactionLock) {
+      this.lock.writeLock().lock();
+      try {
+        if (this.channel == null || !this.channel.isOpen()) {
+          return;
+        }
+        this.mappedRecords = null;
+        this.channel.force(true);
+        this.channel.close();
+      } finally {
+        this.lock.writeLock().unlock();
+      }
+    }
+  }
+
+  private record RecordPosition(long offset, int length) {}
+}
@@ -0,0 +1,50 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public final class LogCodecHelper {
+  private LogCodecHelper() {
+    throw new UnsupportedOperationException("This class shouldn't be instantiated.");
+  }
+
+  // Strings are stored as their unsigned-short length followed by their UTF-8 bytes.
+  public static void writeString(final @NotNull DataOutput output, final @NotNull String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > 0xFFFF) {
+      throw new IOException("String is too long to be encoded: " + bytes.length + " bytes");
+    }
+    output.writeShort(bytes.length);
+    output.write(bytes);
+  }
+
+  public static @NotNull String readString(final @NotNull ByteBuffer buffer) throws IOException {
+    final int length = buffer.getShort() & 0xFFFF;
+    if (length > buffer.remaining()) {
+      throw new IOException("String's length exceeds the remaining record's bytes: " + length);
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
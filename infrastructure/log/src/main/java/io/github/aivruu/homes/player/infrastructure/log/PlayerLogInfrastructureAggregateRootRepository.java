@@ -0,0 +1,154 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.log;
+
+import io.github.aivruu.homes.persistence.domain.InfrastructureAggregateRootRepository;
+import io.github.aivruu.homes.persistence.infrastructure.ExecutorHelper;
+import io.github.aivruu.homes.persistence.infrastructure.utils.AggregateRootRecordLog;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.infrastructure.log.codec.LogPlayerAggregateRootCodec;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public final class PlayerLogInfrastructureAggregateRootRepository extends InfrastructureAggregateRootRepository<PlayerAggregateRoot> {
+  private final Path file;
+  private final long compactionIntervalMillis;
+  private final AggregateRootRecordLog recordLog;
+  private @Nullable ScheduledExecutorService compactionScheduler;
+
+  public PlayerLogInfrastructureAggregateRootRepository(
+    final @NotNull Path file,
+    final boolean syncWrites,
+    final boolean memoryMapped,
+    final long compactionIntervalMillis
+  ) {
+    super(ExecutorHelper.pool());
+    this.file = file;
+    this.compactionIntervalMillis = compactionIntervalMillis;
+    this.recordLog = new AggregateRootRecordLog(file, syncWrites, memoryMapped);
+  }
+
+  @Override
+  public boolean start() {
+    try {
+      Files.createDirectories(this.file.toAbsolutePath().getParent());
+      this.recordLog.open();
+    } catch (final IOException exception) {
+      return false;
+    }
+    if (this.compactionIntervalMillis > 0) {
+      this.compactionScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "Homes-Log-Compactor");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.compactionScheduler.scheduleWithFixedDelay(this::compact, this.compactionIntervalMillis, this.compactionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    return true;
+  }
+
+  private void compact() {
+    if (!this.recordLog.needsCompaction()) {
+      return;
+    }
+    try {
+      this.recordLog.compact();
+    } catch (final IOException ignored) {
+      // The current file is kept untouched, compaction is retried on next interval.
+    }
+  }
+
+  @Override
+  public void close() {
+    if (this.compactionScheduler != null) {
+      this.compactionScheduler.shutdown();
+      try {
+        this.compactionScheduler.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (final InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      this.recordLog.close();
+    } catch (final IOException ignored) {
+      // Appended records were already written, at worst the last one is discarded on next start-up.
+    }
+  }
+
+  @Override
+  public @NotNull CompletableFuture<@Nullable PlayerAggregateRoot> findAsync(final @NotNull String id) {
+    // The index is checked once the queued saves and deletions of the player are done, as it's fully
+    // in-memory, never stored players don't need any disk look-up.
+    return super.ordered(id, () -> !this.recordLog.contains(id)
+      ? CompletableFuture.completedFuture(null)
+      : CompletableFuture.supplyAsync(() -> {
+        try {
+          final ByteBuffer payload = this.recordLog.read(id);
+          return (payload == null) ? null : LogPlayerAggregateRootCodec.INSTANCE.decode(id, payload);
+        } catch (final IOException exception) {
+          // A damaged record must not be taken as a new player, which would overwrite its information.
+          throw new UncheckedIOException(exception);
+        }
+      }, super.executor));
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Boolean> existsAsync(final @NotNull String id) {
+    return super.ordered(id, () -> CompletableFuture.completedFuture(this.recordLog.contains(id)));
+  }
+
+  @Override
+  public @NotNull CompletableFuture<AggregateRootSaveResult> saveAsync(final @NotNull PlayerAggregateRoot aggregateRoot) {
+    // The log is owned by a single server, so it's never changed by another writer.
+    final PlayerAggregateRoot.Saving saving = aggregateRoot.beginSaving();
+    return super.ordered(aggregateRoot.id(), () -> CompletableFuture.supplyAsync(() -> {
+      try {
+        this.recordLog.put(aggregateRoot.id(), LogPlayerAggregateRootCodec.INSTANCE.encode(saving.state()));
+        return AggregateRootSaveResult.saved();
+      } catch (final IOException exception) {
+        aggregateRoot.cancelSaving(saving.expectedVersion(), saving.version());
+        return AggregateRootSaveResult.error();
+      }
+    }, super.executor)).exceptionally(exception -> {
+      // Rejected by the executor, so the record was never written.
+      aggregateRoot.cancelSaving(saving.expectedVersion(), saving.version());
+      return AggregateRootSaveResult.error();
+    });
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Boolean> deleteAsync(final @NotNull String id) {
+    return super.ordered(id, () -> CompletableFuture.supplyAsync(() -> {
+      try {
+        return this.recordLog.delete(id);
+      } catch (final IOException exception) {
+        return false;
+      }
+    }, super.executor));
+  }
+}
@@ -0,0 +1,72 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.log.codec;
+
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.infrastructure.log.LogHomeModelEntityCodec;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+public final class LogPlayerAggregateRootCodec {
+  public static final LogPlayerAggregateRootCodec INSTANCE = new LogPlayerAggregateRootCodec();
+  // Written first in every payload, so the format can evolve without breaking already stored records.
+  private static final byte FORMAT_VERSION = 2;
+
+  private LogPlayerAggregateRootCodec() {}
+
+  public @NotNull PlayerAggregateRoot decode(final @NotNull String id, final @NotNull ByteBuffer buffer) throws IOException {
+    try {
+      final byte formatVersion = buffer.get();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IOException("Unknown format-version for player " + id + ": " + formatVersion);
+      }
+      final long version = buffer.getLong();
+      final HomeModelEntity[] homes = new HomeModelEntity[buffer.get()];
+      for (byte i = 0; i < homes.length; i++) {
+        homes[i] = LogHomeModelEntityCodec.INSTANCE.decode(buffer);
+      }
+      return new PlayerAggregateRoot(new PlayerModelEntity(id, homes), version);
+    } catch (final BufferUnderflowException | NegativeArraySizeException | IllegalArgumentException exception) {
+      throw new IOException("Malformed record for player " + id, exception);
+    }
+  }
+
+  public byte @NotNull [] encode(final @NotNull PlayerAggregateRoot playerAggregateRoot) throws IOException {
+    final HomeModelEntity[] homes = playerAggregateRoot.homes();
+    byte homesCount = 0;
+    for (final HomeModelEntity homeModel : homes) {
+      if (homeModel != null) homesCount++;
+    }
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + homesCount * 48);
+    final DataOutputStream output = new DataOutputStream(bytes);
+    output.writeByte(FORMAT_VERSION);
+    output.writeLong(playerAggregateRoot.version());
+    output.writeByte(homesCount);
+    for (final HomeModelEntity homeModel : homes) {
+      if (homeModel == null) continue;
+      LogHomeModelEntityCodec.INSTANCE.encode(output, homeModel);
+    }
+    return bytes.toByteArray();
+  }
+}
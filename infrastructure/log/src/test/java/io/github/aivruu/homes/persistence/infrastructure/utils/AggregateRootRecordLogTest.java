@@ -0,0 +1,195 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.persistence.infrastructure.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class AggregateRootRecordLogTest {
+  @TempDir
+  Path directory;
+  private AggregateRootRecordLog recordLog;
+
+  @AfterEach
+  void close() throws IOException {
+    if (this.recordLog != null) {
+      this.recordLog.close();
+    }
+  }
+
+  @Test
+  void latestRecordsAreReplayedOnOpen() throws IOException {
+    final Path file = this.directory.resolve("players.log");
+    this.recordLog = open(file, false);
+    this.recordLog.put("first", bytes("first-1"));
+    this.recordLog.put("second", bytes("second-1"));
+    this.recordLog.put("first", bytes("first-2"));
+    assertTrue(this.recordLog.delete("second"));
+    assertFalse(this.recordLog.delete("second"));
+    this.recordLog.close();
+
+    this.recordLog = open(file, false);
+    assertEquals(1, this.recordLog.count());
+    assertArrayEquals(bytes("first-2"), read(this.recordLog, "first"));
+    assertFalse(this.recordLog.contains("second"));
+    assertNull(this.recordLog.read("second"));
+  }
+
+  @Test
+  void tornTailIsTruncatedOnOpen() throws IOException {
+    final Path file = this.directory.resolve("players.log");
+    this.recordLog = open(file, false);
+    this.recordLog.put("first", bytes("first-1"));
+    this.recordLog.close();
+    final long intactSize = Files.size(file);
+    // A record's header announcing more bytes than were written before a crash.
+    final ByteBuffer tornRecord = ByteBuffer.allocate(12).putInt(64).putInt(0).putInt(0).flip();
+    Files.write(file, tornRecord.array(), StandardOpenOption.APPEND);
+
+    this.recordLog = open(file, false);
+    assertEquals(intactSize, Files.size(file));
+    assertArrayEquals(bytes("first-1"), read(this.recordLog, "first"));
+    // Next records are appended right after the last intact one.
+    this.recordLog.put("second", bytes("second-1"));
+    this.recordLog.close();
+    this.recordLog = open(file, false);
+    assertArrayEquals(bytes("first-1"), read(this.recordLog, "first"));
+    assertArrayEquals(bytes("second-1"), read(this.recordLog, "second"));
+  }
+
+  @Test
+  void zeroFilledTailIsTruncatedOnOpen() throws IOException {
+    final Path file = this.directory.resolve("players.log");
+    this.recordLog = open(file, false);
+    this.recordLog.put("first", bytes("first-1"));
+    this.recordLog.close();
+    final long intactSize = Files.size(file);
+    Files.write(file, new byte[32], StandardOpenOption.APPEND);
+
+    this.recordLog = open(file, false);
+    assertEquals(intactSize, Files.size(file));
+    assertArrayEquals(bytes("first-1"), read(this.recordLog, "first"));
+  }
+
+  @Test
+  void lastRecordWithWrongChecksumIsDiscarded() throws IOException {
+    final Path file = this.directory.resolve("players.log");
+    this.recordLog = open(file, false);
+    this.recordLog.put("first", bytes("first-1"));
+    this.recordLog.put("first", bytes("first-2"));
+    this.recordLog.close();
+    flipLastByte(file);
+
+    // The last record was half-written, so the previous state of its aggregate-root is kept.
+    this.recordLog = open(file, false);
+    assertArrayEquals(bytes("first-1"), read(this.recordLog, "first"));
+  }
+
+  @Test
+  void corruptedRecordBeforeTheTailFailsToOpen() throws IOException {
+    final Path file = this.directory.resolve("players.log");
+    this.recordLog = open(file, false);
+    this.recordLog.put("first", bytes("first-1"));
+    this.recordLog.put("second", bytes("second-1"));
+    this.recordLog.close();
+    this.recordLog = null;
+    final byte[] content = Files.readAllBytes(file);
+    // Last byte of the first record's payload.
+    final int firstRecordLength = ByteBuffer.wrap(content).getInt() + 8;
+    content[firstRecordLength - 1] ^= 1;
+    Files.write(file, content);
+
+    final AggregateRootRecordLog corruptedRecordLog = new AggregateRootRecordLog(file, false, false);
+    assertThrows(IOException.class, corruptedRecordLog::open);
+    corruptedRecordLog.close();
+  }
+
+  @Test
+  void compactionKeepsOnlyTheLatestRecords() throws IOException {
+    final Path file = this.directory.resolve("players.log");
+    this.recordLog = open(file, true);
+    final byte[] payload = new byte[64 * 1024];
+    for (int i = 0; i < 32; i++) {
+      Arrays.fill(payload, (byte) i);
+      this.recordLog.put("first", payload);
+    }
+    this.recordLog.put("second", bytes("second-1"));
+    this.recordLog.put("third", bytes("third-1"));
+    assertTrue(this.recordLog.delete("third"));
+    assertTrue(this.recordLog.needsCompaction());
+    final long uncompactedSize = Files.size(file);
+
+    assertTrue(this.recordLog.compact());
+    assertTrue(Files.size(file) < uncompactedSize / 16);
+    assertFalse(this.recordLog.needsCompaction());
+    assertArrayEquals(payload, read(this.recordLog, "first"));
+    assertArrayEquals(bytes("second-1"), read(this.recordLog, "second"));
+    assertFalse(this.recordLog.contains("third"));
+
+    // Records appended after the compaction are kept in the compacted file.
+    this.recordLog.put("second", bytes("second-2"));
+    this.recordLog.close();
+    this.recordLog = open(file, true);
+    assertEquals(2, this.recordLog.count());
+    assertArrayEquals(payload, read(this.recordLog, "first"));
+    assertArrayEquals(bytes("second-2"), read(this.recordLog, "second"));
+  }
+
+  private static @NotNull AggregateRootRecordLog open(final @NotNull Path file, final boolean memoryMapped) throws IOException {
+    final AggregateRootRecordLog recordLog = new AggregateRootRecordLog(file, false, memoryMapped);
+    recordLog.open();
+    return recordLog;
+  }
+
+  private static byte @Nullable [] read(final @NotNull AggregateRootRecordLog recordLog, final @NotNull String id) throws IOException {
+    final ByteBuffer payload = recordLog.read(id);
+    if (payload == null) {
+      return null;
+    }
+    final byte[] bytes = new byte[payload.remaining()];
+    payload.get(bytes);
+    return bytes;
+  }
+
+  private static void flipLastByte(final @NotNull Path file) throws IOException {
+    final byte[] content = Files.readAllBytes(file);
+    content[content.length - 1] ^= 1;
+    Files.write(file, content);
+  }
+
+  private static byte @NotNull [] bytes(final @NotNull String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -17,7 +17,10 @@
 package io.github.aivruu.homes.home.infrastructure.mongodb;
 
 import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
 import org.bson.BsonReader;
+import org.bson.BsonSerializationException;
+import org.bson.BsonType;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
@@ -29,16 +32,30 @@ public enum MongoHomeModelEntityCodec implements Codec<HomeModelEntity> {
 
   @Override
   public @NotNull HomeModelEntity decode(final BsonReader reader, final DecoderContext decoderContext) {
-    return new HomeModelEntity(
-      reader.readString("id"),
-      decoderContext.decodeWithChildContext(MongoHomePositionValueObjectCodec.INSTANCE, reader)
-    );
+    String id = null;
+    HomePositionValueObject position = null;
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      switch (reader.readName()) {
+        case "id" -> id = reader.readString();
+        case "position" -> position = decoderContext.decodeWithChildContext(MongoHomePositionValueObjectCodec.INSTANCE, reader);
+        default -> reader.skipValue();
+      }
+    }
+    reader.readEndDocument();
+    if (id == null || position == null) {
+      throw new BsonSerializationException("Home's id or position is missing from the document.");
+    }
+    return new HomeModelEntity(id, position);
   }
 
   @Override
   public void encode(final BsonWriter writer, final HomeModelEntity homeModel, final EncoderContext encoderContext) {
+    writer.writeStartDocument();
     writer.writeString("id", homeModel.id());
+    writer.writeName("position");
     encoderContext.encodeWithChildContext(MongoHomePositionValueObjectCodec.INSTANCE, writer, homeModel.position());
+    writer.writeEndDocument();
   }
 
   @Override
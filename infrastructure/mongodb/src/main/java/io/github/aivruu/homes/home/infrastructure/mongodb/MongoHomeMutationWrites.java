@@ -0,0 +1,56 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.home.infrastructure.mongodb;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.github.aivruu.homes.home.domain.HomeMutation;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import org.bson.conversions.Bson;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+public final class MongoHomeMutationWrites {
+  private MongoHomeMutationWrites() {
+    throw new UnsupportedOperationException("This class shouldn't be instantiated.");
+  }
+
+  // Every write can be applied again without side-effects, so a mutation already included by a previous
+  // full write doesn't duplicate or corrupt the player's homes.
+  public static void addWrites(
+    final @NotNull Bson player,
+    final @NotNull HomeMutation mutation,
+    final @NotNull List<WriteModel<PlayerAggregateRoot>> writes
+  ) {
+    switch (mutation) {
+      case HomeMutation.Added added -> {
+        writes.add(new UpdateOneModel<>(player, Updates.pull("homes", Filters.eq("id", added.homeId()))));
+        writes.add(new UpdateOneModel<>(player, Updates.push("homes", added.homeModel())));
+      }
+      case HomeMutation.Removed removed ->
+        writes.add(new UpdateOneModel<>(player, Updates.pull("homes", Filters.eq("id", removed.homeId()))));
+      case HomeMutation.PositionChanged positionChanged -> writes.add(new UpdateOneModel<>(
+        player,
+        Updates.set("homes.$[home].position", positionChanged.position()),
+        new UpdateOptions().arrayFilters(List.of(Filters.eq("home.id", positionChanged.homeId())))));
+    }
+  }
+}
@@ -18,6 +18,7 @@ package io.github.aivruu.homes.home.infrastructure.mongodb;
 
 import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
 import org.bson.BsonReader;
+import org.bson.BsonType;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
@@ -31,18 +32,28 @@ public enum MongoHomePositionValueObjectCodec implements Codec<HomePositionValue
 
   @Override
   public @NotNull HomePositionValueObject decode(final BsonReader reader, final DecoderContext decoderContext) {
-    final String worldName = reader.readString("world");
-    return new HomePositionValueObject(
-      worldName.equals("unknown") ? null : Bukkit.getWorld(worldName),
-      reader.readInt32("x"),
-      reader.readInt32("y"),
-      reader.readInt32("z")
-    );
+    String worldName = "unknown";
+    int x = 0;
+    int y = 0;
+    int z = 0;
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      switch (reader.readName()) {
+        case "world" -> worldName = reader.readString();
+        case "x" -> x = reader.readInt32();
+        case "y" -> y = reader.readInt32();
+        case "z" -> z = reader.readInt32();
+        default -> reader.skipValue();
+      }
+    }
+    reader.readEndDocument();
+    return new HomePositionValueObject(worldName.equals("unknown") ? null : Bukkit.getWorld(worldName), x, y, z);
   }
 
   @Override
   public void encode(final BsonWriter writer, final HomePositionValueObject position, final EncoderContext encoderContext) {
     final World world = position.world();
+    writer.writeStartDocument();
     if (world == null) {
       writer.writeString("world", "unknown");
     } else {
@@ -51,6 +62,7 @@ public enum MongoHomePositionValueObjectCodec implements Codec<HomePositionValue
     writer.writeInt32("x", position.x());
     writer.writeInt32("y", position.y());
     writer.writeInt32("z", position.z());
+    writer.writeEndDocument();
   }
 
   @Override
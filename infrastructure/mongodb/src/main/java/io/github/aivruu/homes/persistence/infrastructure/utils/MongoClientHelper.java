@@ -59,10 +59,14 @@ public final class MongoClientHelper {
     final MongoClientSettings clientSettings = MongoClientSettings.builder()
       .applyConnectionString(new ConnectionString("mongodb://" + host))
       .credential(MongoCredential.createCredential(username, database, password.toCharArray()))
-      .codecRegistry(CodecRegistries.fromCodecs(
-        MongoPlayerAggregateRootCodec.INSTANCE,
-        MongoHomeModelEntityCodec.INSTANCE,
-        MongoHomePositionValueObjectCodec.INSTANCE
+      // Default codecs are kept for the Document-based filters and projections.
+      .codecRegistry(CodecRegistries.fromRegistries(
+        CodecRegistries.fromCodecs(
+          MongoPlayerAggregateRootCodec.INSTANCE,
+          MongoHomeModelEntityCodec.INSTANCE,
+          MongoHomePositionValueObjectCodec.INSTANCE
+        ),
+        MongoClientSettings.getDefaultCodecRegistry()
       ))
       .build();
     client = MongoClients.create(clientSettings);
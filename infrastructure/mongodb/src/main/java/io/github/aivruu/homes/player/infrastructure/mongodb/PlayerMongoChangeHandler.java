@@ -0,0 +1,97 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.mongodb;
+
+import io.github.aivruu.homes.aggregate.domain.registry.AggregateRootRegistry;
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import org.bson.BsonValue;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// Applies the players' changes made by other servers to the cached players, which are the online ones. Homes are
+// only mutated by the main-thread, so the changes are applied by it and can't interleave with a mutation.
+public final class PlayerMongoChangeHandler {
+  private final AggregateRootRegistry<PlayerAggregateRoot> playerAggregateRootRegistry;
+  private final Executor mainThreadExecutor;
+  // Deletion events only have the document's '_id' unless pre-images are enabled for the collection.
+  private final Map<BsonValue, String> cachedPlayerIds = new ConcurrentHashMap<>();
+  private volatile boolean closed;
+
+  public PlayerMongoChangeHandler(
+    final @NotNull AggregateRootRegistry<PlayerAggregateRoot> playerAggregateRootRegistry,
+    final @NotNull Executor mainThreadExecutor
+  ) {
+    this.playerAggregateRootRegistry = playerAggregateRootRegistry;
+    this.mainThreadExecutor = mainThreadExecutor;
+  }
+
+  public void stored(final @Nullable BsonValue documentId, final @NotNull PlayerAggregateRoot storedPlayerAggregateRoot) {
+    final String id = storedPlayerAggregateRoot.id();
+    if (!this.playerAggregateRootRegistry.existsInCache(id)) {
+      return;
+    }
+    if (documentId != null) {
+      this.cachedPlayerIds.put(documentId, id);
+    }
+    final HomeModelEntity[] homes = storedPlayerAggregateRoot.homes();
+    final long version = storedPlayerAggregateRoot.version();
+    this.execute(() -> {
+      final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(id);
+      if (playerAggregateRoot != null) {
+        playerAggregateRoot.refreshHomes(homes, version);
+      }
+    });
+  }
+
+  public void deleted(final @Nullable BsonValue documentId, final @Nullable PlayerAggregateRoot deletedPlayerAggregateRoot) {
+    final String id = (deletedPlayerAggregateRoot != null)
+      ? deletedPlayerAggregateRoot.id()
+      : (documentId == null) ? null : this.cachedPlayerIds.remove(documentId);
+    if (id == null) {
+      return;
+    }
+    this.execute(() -> {
+      // Online players keep their aggregate-root, as it's expected by their commands and their quit, so only
+      // their homes are cleared, and they're stored again on next save.
+      final PlayerAggregateRoot playerAggregateRoot = this.playerAggregateRootRegistry.findInCache(id);
+      if (playerAggregateRoot != null) {
+        playerAggregateRoot.homes(new HomeModelEntity[0]);
+      }
+    });
+  }
+
+  public void close() {
+    this.closed = true;
+  }
+
+  private void execute(final @NotNull Runnable task) {
+    if (this.closed) {
+      return;
+    }
+    try {
+      this.mainThreadExecutor.execute(task);
+    } catch (final RejectedExecutionException exception) {
+      // The plugin is being disabled, so there are no cached players to update anymore.
+    }
+  }
+}
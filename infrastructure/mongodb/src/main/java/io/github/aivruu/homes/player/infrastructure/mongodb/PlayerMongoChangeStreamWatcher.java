@@ -0,0 +1,141 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.mongodb;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import io.github.aivruu.homes.aggregate.domain.registry.AggregateRootRegistry;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the players' collection for changes made by other servers, and refreshes the affected players'
+ * cached aggregate-roots. Reconnections resume the stream from the last seen event.
+ */
+public final class PlayerMongoChangeStreamWatcher {
+  private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+  private static final long MAX_RECONNECT_DELAY_MILLIS = 30000;
+  // The resume-token's event was removed from the oplog, so the stream can't be resumed from it.
+  private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+  private final MongoCollection<PlayerAggregateRoot> collection;
+  private final PlayerMongoChangeHandler changeHandler;
+  private @Nullable BsonDocument resumeToken;
+  private @Nullable Thread thread;
+  private volatile boolean closed;
+
+  public PlayerMongoChangeStreamWatcher(
+    final @NotNull MongoCollection<PlayerAggregateRoot> collection,
+    final @NotNull AggregateRootRegistry<PlayerAggregateRoot> playerAggregateRootRegistry,
+    final @NotNull Executor mainThreadExecutor
+  ) {
+    this.collection = collection;
+    this.changeHandler = new PlayerMongoChangeHandler(playerAggregateRootRegistry, mainThreadExecutor);
+  }
+
+  public void start() {
+    if (this.thread != null) {
+      return;
+    }
+    this.thread = new Thread(this::watch, "Homes-Mongo-Change-Stream");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  private void watch() {
+    long reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+    while (!this.closed) {
+      ChangeStreamIterable<PlayerAggregateRoot> changeStream = this.collection
+        .watch(List.of(Aggregates.match(Filters.in("operationType", "insert", "update", "replace", "delete"))))
+        .fullDocument(FullDocument.UPDATE_LOOKUP)
+        .fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE)
+        // Bounds how long a close-request waits for the stream to notice it.
+        .maxAwaitTime(1, TimeUnit.SECONDS);
+      if (this.resumeToken != null) {
+        changeStream = changeStream.resumeAfter(this.resumeToken);
+      }
+      try (final MongoChangeStreamCursor<ChangeStreamDocument<PlayerAggregateRoot>> cursor = changeStream.cursor()) {
+        reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+        while (!this.closed) {
+          final ChangeStreamDocument<PlayerAggregateRoot> change = cursor.tryNext();
+          if (change != null) {
+            this.handle(change);
+          }
+          // Updated even without events, so a resumed stream doesn't start from an expired position.
+          final BsonDocument resumeToken = cursor.getResumeToken();
+          if (resumeToken != null) {
+            this.resumeToken = resumeToken;
+          }
+        }
+      } catch (final MongoException exception) {
+        if (exception.getCode() == CHANGE_STREAM_HISTORY_LOST) {
+          this.resumeToken = null;
+        }
+        try {
+          Thread.sleep(reconnectDelayMillis);
+        } catch (final InterruptedException interruptedException) {
+          return;
+        }
+        reconnectDelayMillis = Math.min(reconnectDelayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+      }
+    }
+  }
+
+  private void handle(final @NotNull ChangeStreamDocument<PlayerAggregateRoot> change) {
+    final BsonDocument documentKey = change.getDocumentKey();
+    final BsonValue documentId = (documentKey == null) ? null : documentKey.get("_id");
+    switch (change.getOperationType()) {
+      case INSERT, UPDATE, REPLACE -> {
+        // It's null if the document was deleted before being looked-up, its deletion-event comes next.
+        final PlayerAggregateRoot storedPlayerAggregateRoot = change.getFullDocument();
+        if (storedPlayerAggregateRoot != null) {
+          this.changeHandler.stored(documentId, storedPlayerAggregateRoot);
+        }
+      }
+      case DELETE -> this.changeHandler.deleted(documentId, change.getFullDocumentBeforeChange());
+      default -> {}
+    }
+  }
+
+  public void close() {
+    this.closed = true;
+    this.changeHandler.close();
+    final Thread thread = this.thread;
+    if (thread == null) {
+      return;
+    }
+    thread.interrupt();
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -16,75 +16,445 @@
 // along with this program. If not, see <https://www.gnu.org/licenses/>.
 package io.github.aivruu.homes.player.infrastructure.mongodb;
 
+import com.mongodb.MongoException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.MongoWriteException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import io.github.aivruu.homes.aggregate.domain.registry.AggregateRootRegistry;
+import io.github.aivruu.homes.home.domain.HomeMutation;
 import io.github.aivruu.homes.persistence.domain.InfrastructureAggregateRootRepository;
+import io.github.aivruu.homes.persistence.infrastructure.AggregateRootIdBloomFilter;
+import io.github.aivruu.homes.persistence.infrastructure.CircuitBreaker;
 import io.github.aivruu.homes.persistence.infrastructure.ExecutorHelper;
 import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import net.kyori.adventure.text.logger.slf4j.ComponentLogger;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public final class PlayerMongoInfrastructureAggregateRootRepository extends InfrastructureAggregateRootRepository<PlayerAggregateRoot> {
+  private static final CountOptions FIRST_MATCH = new CountOptions().limit(1);
+  private static final long SPOOL_REPLAY_INTERVAL_MILLIS = 1000;
+  private final ComponentLogger logger;
   private final MongoClient client;
   private final String databaseName;
   private final String collectionName;
+  private final boolean existenceFilter;
+  private final PlayerMongoSpool spool;
+  private final CircuitBreaker circuitBreaker;
   private MongoCollection<PlayerAggregateRoot> playerAggregateRootMongoCollection;
+  private PlayerMongoSavingsWriter savingsWriter;
+  private @Nullable AggregateRootIdBloomFilter storedIds;
+  private @Nullable ScheduledExecutorService spoolReplayScheduler;
 
   public PlayerMongoInfrastructureAggregateRootRepository(
+    final @NotNull ComponentLogger logger,
     final @NotNull MongoClient client,
     final @NotNull String databaseName,
-    final @NotNull String collectionName) {
+    final @NotNull String collectionName,
+    final boolean existenceFilter,
+    final @NotNull Path spoolFile,
+    final int circuitBreakerFailureThreshold,
+    final long circuitBreakerOpenMillis) {
     super(ExecutorHelper.pool());
+    this.logger = logger;
     this.client = client;
     this.databaseName = databaseName;
     this.collectionName = collectionName;
+    this.existenceFilter = existenceFilter;
+    this.spool = new PlayerMongoSpool(spoolFile);
+    this.circuitBreaker = new CircuitBreaker(circuitBreakerFailureThreshold, circuitBreakerOpenMillis);
   }
 
   @Override
   public boolean start() {
+    try {
+      this.spool.open();
+    } catch (final IOException exception) {
+      return false;
+    }
     try {
       final MongoDatabase database = this.client.getDatabase(this.databaseName);
       this.playerAggregateRootMongoCollection = database.getCollection(this.collectionName, PlayerAggregateRoot.class);
-      return true;
-    } catch (final IllegalArgumentException exception) {
+      this.savingsWriter = new PlayerMongoSavingsWriter(this.playerAggregateRootMongoCollection::bulkWrite);
+      // Without it every look-up by id is a collection-scan, it's a no-op if the index already exists.
+      this.playerAggregateRootMongoCollection.createIndex(Indexes.ascending("id"), new IndexOptions().unique(true).name("id_unique"));
+      if (this.existenceFilter) {
+        this.storedIds = this.loadStoredIds(database.getCollection(this.collectionName));
+      }
+    } catch (final IllegalArgumentException | MongoException exception) {
       return false;
     }
+    this.spoolReplayScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "Homes-Mongo-Spool-Replay");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.spoolReplayScheduler.scheduleWithFixedDelay(this::replaySpool, SPOOL_REPLAY_INTERVAL_MILLIS, SPOOL_REPLAY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    return true;
+  }
+
+  private @NotNull AggregateRootIdBloomFilter loadStoredIds(final @NotNull MongoCollection<Document> collection) {
+    final AggregateRootIdBloomFilter bloomFilter = new AggregateRootIdBloomFilter(collection.estimatedDocumentCount());
+    // The id's index is scanned and only its field is projected, so the ids are read without fetching the documents.
+    for (final Document document : collection.find()
+      .hint(Indexes.ascending("id"))
+      .projection(Projections.fields(Projections.include("id"), Projections.excludeId()))) {
+      final String id = document.getString("id");
+      if (id != null) {
+        bloomFilter.add(id);
+      }
+    }
+    return bloomFilter;
+  }
+
+  public @NotNull PlayerMongoChangeStreamWatcher changeStreamWatcher(
+    final @NotNull AggregateRootRegistry<PlayerAggregateRoot> playerAggregateRootRegistry,
+    final @NotNull Executor mainThreadExecutor
+  ) {
+    return new PlayerMongoChangeStreamWatcher(this.playerAggregateRootMongoCollection, playerAggregateRootRegistry, mainThreadExecutor);
+  }
+
+  private boolean isNotStored(final @NotNull String id) {
+    return this.storedIds != null && !this.storedIds.mightContain(id);
   }
 
   @Override
   public void close() {
+    if (this.spoolReplayScheduler != null) {
+      this.spoolReplayScheduler.shutdownNow();
+    }
+    try {
+      this.spool.close();
+    } catch (final IOException ignored) {
+      // Spooled states were already forced to the disk, they're replayed on next start-up.
+    }
     this.client.close();
   }
 
+  // Requests fail fast while the database is unreachable, instead of blocking a thread of the pool until the
+  // driver's server-selection timeout.
+  private <T> @NotNull CompletableFuture<T> request(final @NotNull Supplier<T> request) {
+    if (!this.circuitBreaker.allowsRequest()) {
+      return CompletableFuture.failedFuture(new MongoException("The database is unreachable, requests are rejected until it recovers."));
+    }
+    try {
+      return CompletableFuture.supplyAsync(() -> this.send(request), super.executor);
+    } catch (final RejectedExecutionException exception) {
+      // It was never sent, so it can't tell whether the database recovered.
+      this.circuitBreaker.release();
+      return CompletableFuture.failedFuture(exception);
+    }
+  }
+
+  private <T> T send(final @NotNull Supplier<T> request) {
+    try {
+      final T result = request.get();
+      this.circuitBreaker.recordSuccess();
+      return result;
+    } catch (final MongoSocketException | MongoTimeoutException exception) {
+      this.circuitBreaker.recordFailure();
+      throw exception;
+    } catch (final MongoException exception) {
+      // The database answered, only this request was rejected.
+      this.circuitBreaker.recordSuccess();
+      throw exception;
+    } catch (final RuntimeException exception) {
+      // Failed outside the database, as while encoding or decoding its documents.
+      this.circuitBreaker.release();
+      throw exception;
+    }
+  }
+
   @Override
   public @NotNull CompletableFuture<@Nullable PlayerAggregateRoot> findAsync(final @NotNull String id) {
-    return CompletableFuture.supplyAsync(() ->
-      this.playerAggregateRootMongoCollection.find(new Document("id", id)).first(), super.executor);
+    // Players that were never stored don't need a database round-trip.
+    if (this.isNotStored(id)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return super.ordered(id, () -> {
+      // The database has an older state until the spooled one is replayed.
+      final PlayerAggregateRoot spooledState = this.spool.find(id);
+      if (spooledState != null) {
+        return CompletableFuture.completedFuture(spooledState);
+      }
+      return this.request(() -> this.playerAggregateRootMongoCollection.find(Filters.eq("id", id)).first());
+    });
   }
 
   @Override
   public @NotNull CompletableFuture<Boolean> existsAsync(final @NotNull String id) {
-    return CompletableFuture.supplyAsync(() ->
-      this.playerAggregateRootMongoCollection.find(new Document("id", id)).first() != null, super.executor);
+    if (this.isNotStored(id)) {
+      return CompletableFuture.completedFuture(false);
+    }
+    return super.ordered(id, () -> {
+      if (this.spool.find(id) != null) {
+        return CompletableFuture.completedFuture(true);
+      }
+      // Counting stops at the first index's match, and no document is fetched nor decoded.
+      return this.request(() -> this.playerAggregateRootMongoCollection.countDocuments(Filters.eq("id", id), FIRST_MATCH) > 0);
+    });
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Long> storedVersionAsync(final @NotNull String id) {
+    if (this.isNotStored(id)) {
+      return CompletableFuture.completedFuture(NOT_STORED_VERSION);
+    }
+    return super.ordered(id, () -> {
+      final PlayerAggregateRoot spooledState = this.spool.find(id);
+      if (spooledState != null) {
+        return CompletableFuture.completedFuture(spooledState.version());
+      }
+      // Only the version is projected, so the player's homes aren't fetched nor decoded.
+      return this.request(() -> {
+        final Document document = this.playerAggregateRootMongoCollection.withDocumentClass(Document.class)
+          .find(Filters.eq("id", id))
+          .projection(Projections.fields(Projections.include("version"), Projections.excludeId()))
+          .first();
+        if (document == null) {
+          return NOT_STORED_VERSION;
+        }
+        // Documents stored without version have the initial one.
+        return (document.get("version") instanceof Number version) ? version.longValue() : 0L;
+      });
+    });
+  }
+
+  @Override
+  public @NotNull CompletableFuture<AggregateRootSaveResult> saveAsync(final @NotNull PlayerAggregateRoot aggregateRoot) {
+    return this.saveAllAsync(List.of(aggregateRoot)).thenApply(results -> results.get(0));
+  }
+
+  @Override
+  public @NotNull CompletableFuture<List<AggregateRootSaveResult>> saveAllAsync(final @NotNull List<PlayerAggregateRoot> aggregateRoots) {
+    final List<PlayerAggregateRoot.Saving> savings = new ArrayList<>(aggregateRoots.size());
+    boolean changed = false;
+    for (final PlayerAggregateRoot aggregateRoot : aggregateRoots) {
+      if (this.storedIds != null) {
+        this.storedIds.add(aggregateRoot.id());
+      }
+      // Captured on the caller's thread, so mutations recorded later are kept for the next save.
+      final PlayerAggregateRoot.Saving saving = aggregateRoot.beginSaving();
+      savings.add(saving);
+      final List<HomeMutation> mutations = saving.mutations();
+      changed |= (mutations == null) || !mutations.isEmpty();
+    }
+    if (!changed) {
+      // Nothing changed since the last write, so no round-trip is needed.
+      return CompletableFuture.completedFuture(Collections.nCopies(aggregateRoots.size(), AggregateRootSaveResult.saved()));
+    }
+    final List<String> ids = new ArrayList<>(aggregateRoots.size());
+    for (final PlayerAggregateRoot aggregateRoot : aggregateRoots) {
+      ids.add(aggregateRoot.id());
+    }
+    return super.ordered(ids, () -> {
+      // Writes are spooled until the previous spooled states were replayed, so a player's writes are applied
+      // in their order and over the version they expect.
+      if (!this.spool.isEmpty() || !this.circuitBreaker.allowsRequest()) {
+        return this.submit(aggregateRoots, savings, false, () -> this.spool(aggregateRoots, savings));
+      }
+      return this.submit(aggregateRoots, savings, true, () -> this.write(aggregateRoots, savings));
+    });
+  }
+
+  private @NotNull CompletableFuture<List<AggregateRootSaveResult>> submit(
+    final @NotNull List<PlayerAggregateRoot> aggregateRoots,
+    final @NotNull List<PlayerAggregateRoot.Saving> savings,
+    final boolean allowedRequest,
+    final @NotNull Supplier<List<AggregateRootSaveResult>> save
+  ) {
+    try {
+      return CompletableFuture.supplyAsync(save, super.executor);
+    } catch (final RejectedExecutionException exception) {
+      if (allowedRequest) {
+        this.circuitBreaker.release();
+      }
+      final AggregateRootSaveResult[] results = new AggregateRootSaveResult[aggregateRoots.size()];
+      Arrays.fill(results, AggregateRootSaveResult.error());
+      this.cancelSavings(aggregateRoots, savings, results);
+      return CompletableFuture.failedFuture(exception);
+    }
+  }
+
+  private @NotNull List<AggregateRootSaveResult> write(
+    final @NotNull List<PlayerAggregateRoot> aggregateRoots,
+    final @NotNull List<PlayerAggregateRoot.Saving> savings
+  ) {
+    final AggregateRootSaveResult[] results;
+    try {
+      results = this.savingsWriter.write(savings);
+    } catch (final MongoSocketException | MongoTimeoutException exception) {
+      this.circuitBreaker.recordFailure();
+      // Writes applied before the failure are overwritten by the replay, as it writes the full states.
+      return this.spool(aggregateRoots, savings);
+    } catch (final MongoException exception) {
+      this.circuitBreaker.recordSuccess();
+      final AggregateRootSaveResult[] errors = new AggregateRootSaveResult[aggregateRoots.size()];
+      Arrays.fill(errors, AggregateRootSaveResult.error());
+      this.cancelSavings(aggregateRoots, savings, errors);
+      throw exception;
+    } catch (final RuntimeException exception) {
+      // Failed outside the database, as while encoding the documents, so the probe's outcome is unknown.
+      this.circuitBreaker.release();
+      final AggregateRootSaveResult[] errors = new AggregateRootSaveResult[aggregateRoots.size()];
+      Arrays.fill(errors, AggregateRootSaveResult.error());
+      this.cancelSavings(aggregateRoots, savings, errors);
+      throw exception;
+    }
+    this.circuitBreaker.recordSuccess();
+    this.cancelSavings(aggregateRoots, savings, results);
+    return Arrays.asList(results);
+  }
+
+  private @NotNull List<AggregateRootSaveResult> spool(
+    final @NotNull List<PlayerAggregateRoot> aggregateRoots,
+    final @NotNull List<PlayerAggregateRoot.Saving> savings
+  ) {
+    final List<PlayerMongoSpool.Entry> entries = new ArrayList<>(savings.size());
+    for (final PlayerAggregateRoot.Saving saving : savings) {
+      final List<HomeMutation> mutations = saving.mutations();
+      if ((mutations == null) || !mutations.isEmpty()) {
+        entries.add(new PlayerMongoSpool.Entry(saving.state(), saving.expectedVersion()));
+      }
+    }
+    final AggregateRootSaveResult[] results = new AggregateRootSaveResult[aggregateRoots.size()];
+    try {
+      // Spooled states are durable, and they're replayed over the stored versions their saves expected.
+      this.spool.append(entries);
+      Arrays.fill(results, AggregateRootSaveResult.saved());
+    } catch (final IOException | RuntimeException exception) {
+      Arrays.fill(results, AggregateRootSaveResult.error());
+    }
+    this.cancelSavings(aggregateRoots, savings, results);
+    return Arrays.asList(results);
+  }
+
+  private void replaySpool() {
+    final List<PlayerMongoSpool.Entry> entries = this.spool.entries();
+    if (entries.isEmpty() || !this.circuitBreaker.allowsRequest()) {
+      return;
+    }
+    try {
+      for (final PlayerMongoSpool.Entry entry : entries) {
+        try {
+          if (this.send(() -> this.replay(entry)).wasSaved()) {
+            this.spool.replayed(entry);
+            continue;
+          }
+          this.spool.reject(entry);
+          this.logger.warn("The spooled information of the player {} was changed by another server meanwhile, it was moved to {}.",
+            entry.state().id(), this.spool.rejectedFile());
+        } catch (final MongoSocketException | MongoTimeoutException exception) {
+          // The database is unreachable again, remaining states are replayed once the breaker allows it.
+          return;
+        } catch (final RuntimeException exception) {
+          // Rejected by the database itself or not encodable, so it would fail on every replay too.
+          this.spool.reject(entry);
+          this.logger.error("The spooled information of the player {} was rejected by the database, it was moved to {}.",
+            entry.state().id(), this.spool.rejectedFile(), exception);
+        }
+      }
+    } catch (final IOException | RuntimeException exception) {
+      // Thrown out of the scheduled task, it would cancel all the next replays.
+      this.logger.error("The spool-file couldn't be updated, its remaining states will be replayed again.", exception);
+    }
+  }
+
+  private @NotNull AggregateRootSaveResult replay(final @NotNull PlayerMongoSpool.Entry entry) {
+    final PlayerAggregateRoot spooledState = entry.state();
+    try {
+      // Written only over the version its save expected, or over itself if a previous replay applied it.
+      this.playerAggregateRootMongoCollection.replaceOne(
+        PlayerMongoSavingsWriter.storedAt(spooledState.id(), entry.expectedVersion(), spooledState.version()),
+        spooledState,
+        PlayerMongoSavingsWriter.UPSERT);
+      return AggregateRootSaveResult.saved();
+    } catch (final MongoWriteException exception) {
+      if (exception.getCode() != PlayerMongoSavingsWriter.DUPLICATE_KEY_ERROR_CODE) {
+        throw exception;
+      }
+      return AggregateRootSaveResult.conflict();
+    }
+  }
+
+  private void cancelSavings(
+    final @NotNull List<PlayerAggregateRoot> aggregateRoots,
+    final @NotNull List<PlayerAggregateRoot.Saving> savings,
+    final @NotNull AggregateRootSaveResult[] results
+  ) {
+    for (int i = 0; i < results.length; i++) {
+      if (results[i].wasSaved()) {
+        continue;
+      }
+      final PlayerAggregateRoot aggregateRoot = aggregateRoots.get(i);
+      final PlayerAggregateRoot.Saving saving = savings.get(i);
+      // Drained mutations that weren't persisted are lost, so the next save must write everything.
+      aggregateRoot.requireFullWrite();
+      aggregateRoot.cancelSaving(saving.expectedVersion(), saving.version());
+    }
   }
 
   @Override
-  public @NotNull CompletableFuture<Boolean> saveAsync(final @NotNull PlayerAggregateRoot aggregateRoot) {
-    return CompletableFuture.supplyAsync(() -> {
-      final boolean alreadyExists = this.playerAggregateRootMongoCollection
-        .find(new Document("id", aggregateRoot.id()))
-        .first() != null;
-      return !alreadyExists && this.playerAggregateRootMongoCollection.insertOne(aggregateRoot).wasAcknowledged();
-    }, super.executor);
+  public @NotNull CompletableFuture<Boolean> leaseAsync(final @NotNull String id, final long version, final long durationMillis) {
+    // The expiration is computed with the database's clock, so the servers' clocks don't need to match.
+    final Document lease = new Document("$set", new Document("leaseUntil", new Document("$add", List.of("$$NOW", durationMillis)))
+      .append("leaseVersion", version));
+    return super.ordered(id, () -> this.request(() ->
+      this.playerAggregateRootMongoCollection.updateOne(Filters.eq("id", id), List.of(lease)).wasAcknowledged()));
+  }
+
+  @Override
+  public @NotNull CompletableFuture<Boolean> isLeasedAsync(final @NotNull String id) {
+    if (this.isNotStored(id)) {
+      return CompletableFuture.completedFuture(false);
+    }
+    // Leases are ignored once expired or once the leased version was stored.
+    final Bson leased = Filters.and(Filters.eq("id", id), Filters.expr(new Document("$and", List.of(
+      new Document("$gt", List.of("$leaseUntil", "$$NOW")),
+      new Document("$lt", List.of("$version", "$leaseVersion"))))));
+    return super.ordered(id, () -> this.request(() ->
+      this.playerAggregateRootMongoCollection.countDocuments(leased, FIRST_MATCH) > 0));
   }
 
   @Override
   public @NotNull CompletableFuture<Boolean> deleteAsync(final @NotNull String id) {
-    return CompletableFuture.supplyAsync(() ->
-      this.playerAggregateRootMongoCollection.deleteOne(new Document("id", id)).wasAcknowledged(), super.executor);
+    return super.ordered(id, () -> this.request(() -> {
+      final boolean deleted = this.playerAggregateRootMongoCollection.deleteOne(Filters.eq("id", id)).wasAcknowledged();
+      if (deleted) {
+        // Otherwise its replay would store the player again.
+        try {
+          this.spool.discard(id);
+        } catch (final IOException exception) {
+          throw new UncheckedIOException(exception);
+        }
+      }
+      return deleted;
+    }));
   }
 }
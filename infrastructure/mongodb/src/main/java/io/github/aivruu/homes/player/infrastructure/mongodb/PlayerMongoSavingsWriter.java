@@ -0,0 +1,141 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.mongodb;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.github.aivruu.homes.home.domain.HomeMutation;
+import io.github.aivruu.homes.home.infrastructure.mongodb.MongoHomeMutationWrites;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import org.bson.conversions.Bson;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Players of a batch are independent, so their full-writes are sent together as an unordered bulk-write, while the
+// mutations of each player are sent as its own ordered bulk-write, as they must be applied in their order.
+public final class PlayerMongoSavingsWriter {
+  static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+  static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+  private static final BulkWriteOptions ORDERED = new BulkWriteOptions().ordered(true);
+  private final BulkWriter bulkWriter;
+
+  public PlayerMongoSavingsWriter(final @NotNull BulkWriter bulkWriter) {
+    this.bulkWriter = bulkWriter;
+  }
+
+  // Documents are only written while they still have the version expected by the writer, or the version being
+  // written if a previous attempt already applied it. Documents stored without version have the initial one.
+  static @NotNull Bson storedAt(final @NotNull String id, final long expectedVersion, final long version) {
+    final Bson versionFilter = Filters.in("version", expectedVersion, version);
+    return Filters.and(Filters.eq("id", id), (expectedVersion == 0)
+      ? Filters.or(versionFilter, Filters.exists("version", false))
+      : versionFilter);
+  }
+
+  // If the stored version doesn't match, the upsert is rejected by the id's unique-index.
+  static @NotNull ReplaceOneModel<PlayerAggregateRoot> replaceAt(final @NotNull PlayerAggregateRoot state, final long expectedVersion) {
+    return new ReplaceOneModel<>(storedAt(state.id(), expectedVersion, state.version()), state, UPSERT);
+  }
+
+  public @NotNull AggregateRootSaveResult[] write(final @NotNull List<PlayerAggregateRoot.Saving> savings) {
+    final AggregateRootSaveResult[] results = new AggregateRootSaveResult[savings.size()];
+    Arrays.fill(results, AggregateRootSaveResult.saved());
+    final List<WriteModel<PlayerAggregateRoot>> replaces = new ArrayList<>(savings.size());
+    final List<Integer> replaceOwners = new ArrayList<>(savings.size());
+    for (int i = 0; i < savings.size(); i++) {
+      final PlayerAggregateRoot.Saving saving = savings.get(i);
+      final List<HomeMutation> mutations = saving.mutations();
+      if ((mutations != null) && (mutations.isEmpty() || this.writeMutations(saving, mutations))) {
+        continue;
+      }
+      // Mutations that weren't applied, or only some of them, because the document was deleted or changed by
+      // another writer meanwhile, are overwritten by the full-write along with the applied ones.
+      replaces.add(replaceAt(saving.state(), saving.expectedVersion()));
+      replaceOwners.add(i);
+    }
+    if (!replaces.isEmpty()) {
+      this.writeReplaces(replaces, replaceOwners, results);
+    }
+    return results;
+  }
+
+  // Returns whether every mutation and the player's version were applied.
+  private boolean writeMutations(final @NotNull PlayerAggregateRoot.Saving saving, final @NotNull List<HomeMutation> mutations) {
+    final Bson storedAt = storedAt(saving.state().id(), saving.expectedVersion(), saving.version());
+    final List<WriteModel<PlayerAggregateRoot>> writes = new ArrayList<>(mutations.size() + 1);
+    for (final HomeMutation mutation : mutations) {
+      MongoHomeMutationWrites.addWrites(storedAt, mutation, writes);
+    }
+    // Set at last, so the player's previous writes still match the expected version.
+    writes.add(new UpdateOneModel<>(storedAt, Updates.set("version", saving.version())));
+    try {
+      final BulkWriteResult result = this.bulkWriter.bulkWrite(writes, ORDERED);
+      // Every write targets the player's document, so fewer matches mean that it doesn't exist or has another version.
+      return result.wasAcknowledged() && (result.getMatchedCount() == writes.size());
+    } catch (final MongoBulkWriteException exception) {
+      // Ordered bulk-writes stop at the first error, so the next writes weren't applied.
+      return false;
+    }
+  }
+
+  private void writeReplaces(
+    final @NotNull List<WriteModel<PlayerAggregateRoot>> replaces,
+    final @NotNull List<Integer> replaceOwners,
+    final @NotNull AggregateRootSaveResult[] results
+  ) {
+    try {
+      if (!this.bulkWriter.bulkWrite(replaces, UNORDERED).wasAcknowledged()) {
+        for (final int owner : replaceOwners) {
+          results[owner] = AggregateRootSaveResult.error();
+        }
+      }
+    } catch (final MongoBulkWriteException exception) {
+      // Writes are applied even if the write-concern couldn't be satisfied, but they aren't guaranteed.
+      if (exception.getWriteConcernError() != null) {
+        for (final int owner : replaceOwners) {
+          results[owner] = AggregateRootSaveResult.error();
+        }
+      }
+      // Unordered bulk-writes apply every write but the failed ones, so the other players were saved.
+      for (final BulkWriteError writeError : exception.getWriteErrors()) {
+        // An upsert whose version didn't match tried to insert a second document with the same id.
+        results[replaceOwners.get(writeError.getIndex())] = (writeError.getCode() == DUPLICATE_KEY_ERROR_CODE)
+          ? AggregateRootSaveResult.conflict()
+          : AggregateRootSaveResult.error();
+      }
+    }
+  }
+
+  // Implemented by the players' collection, so the writes can be checked without a database.
+  @FunctionalInterface
+  public interface BulkWriter {
+    @NotNull BulkWriteResult bulkWrite(@NotNull List<WriteModel<PlayerAggregateRoot>> writes, @NotNull BulkWriteOptions options);
+  }
+}
@@ -0,0 +1,200 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.mongodb;
+
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import io.github.aivruu.homes.player.infrastructure.mongodb.codec.MongoPlayerAggregateRootCodec;
+import org.bson.BSONException;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt64;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Append-only file of the players' states that couldn't be sent to the database, stored as consecutive
+// BSON documents, which are prefixed by their own length. Only the latest version of each player is kept
+// in memory, with the stored version its save expected, and the file is deleted once all of them were
+// replayed. States rejected by the database are moved to a second file, so they're never lost silently.
+public final class PlayerMongoSpool {
+  // An empty document has only its length and its terminator.
+  private static final int MIN_DOCUMENT_LENGTH = 5;
+  private static final BsonDocumentCodec DOCUMENT_CODEC = new BsonDocumentCodec();
+  private final Path file;
+  private final Path rejectedFile;
+  // Guarded by this.
+  private final Map<String, Entry> entries = new HashMap<>();
+  private @Nullable FileChannel channel;
+
+  public PlayerMongoSpool(final @NotNull Path file) {
+    this.file = file;
+    this.rejectedFile = file.resolveSibling(file.getFileName() + ".rejected");
+  }
+
+  public synchronized void open() throws IOException {
+    if (Files.notExists(this.file)) {
+      return;
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.file)).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.remaining() >= MIN_DOCUMENT_LENGTH) {
+      final int length = buffer.getInt(buffer.position());
+      if ((length < MIN_DOCUMENT_LENGTH) || (length > buffer.remaining())) {
+        break;
+      }
+      final byte[] document = new byte[length];
+      buffer.get(document);
+      try {
+        this.keep(decode(document));
+      } catch (final BSONException | ClassCastException exception) {
+        buffer.position(buffer.position() - length);
+        break;
+      }
+    }
+    this.channel = FileChannel.open(this.file, StandardOpenOption.WRITE);
+    if (buffer.hasRemaining()) {
+      // A document torn by a crash during its append is discarded, its player's previous state is kept.
+      this.channel.truncate(buffer.position());
+    }
+    this.channel.position(buffer.position());
+    if (this.entries.isEmpty()) {
+      this.clear();
+    }
+  }
+
+  private static @NotNull Entry decode(final byte @NotNull [] bytes) {
+    final RawBsonDocument document = new RawBsonDocument(bytes);
+    final PlayerAggregateRoot state = MongoPlayerAggregateRootCodec.INSTANCE.decode(
+      new BsonDocumentReader(document.getDocument("state")), DecoderContext.builder().build());
+    return new Entry(state, document.getInt64("expectedVersion").getValue());
+  }
+
+  private static @NotNull ByteBuffer encode(final @NotNull Entry entry) {
+    final BsonDocument document = new BsonDocument("expectedVersion", new BsonInt64(entry.expectedVersion()))
+      .append("state", new RawBsonDocument(entry.state(), MongoPlayerAggregateRootCodec.INSTANCE));
+    return new RawBsonDocument(document, DOCUMENT_CODEC).getByteBuffer().asNIO();
+  }
+
+  public synchronized boolean isEmpty() {
+    return this.entries.isEmpty();
+  }
+
+  public synchronized @Nullable PlayerAggregateRoot find(final @NotNull String id) {
+    final Entry entry = this.entries.get(id);
+    if (entry == null) {
+      return null;
+    }
+    // Spooled states are shared snapshots, so every look-up gets its own aggregate-root.
+    final HomeModelEntity[] spooledHomes = entry.state().homes();
+    final HomeModelEntity[] homes = new HomeModelEntity[spooledHomes.length];
+    for (int i = 0; i < spooledHomes.length; i++) {
+      homes[i] = (spooledHomes[i] == null) ? null : spooledHomes[i].copy();
+    }
+    return new PlayerAggregateRoot(new PlayerModelEntity(id, homes), entry.state().version());
+  }
+
+  public synchronized @NotNull List<Entry> entries() {
+    return new ArrayList<>(this.entries.values());
+  }
+
+  public synchronized void append(final @NotNull Collection<Entry> entries) throws IOException {
+    if (this.channel == null) {
+      this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    write(this.channel, entries);
+    for (final Entry entry : entries) {
+      this.keep(entry);
+    }
+  }
+
+  private static void write(final @NotNull FileChannel channel, final @NotNull Collection<Entry> entries) throws IOException {
+    for (final Entry entry : entries) {
+      final ByteBuffer document = encode(entry);
+      while (document.hasRemaining()) {
+        channel.write(document);
+      }
+    }
+    channel.force(false);
+  }
+
+  private void keep(final @NotNull Entry entry) {
+    this.entries.merge(entry.state().id(), entry, (previous, current) -> {
+      // States are replayed by version, so documents appended out of order don't replace newer ones.
+      if (current.state().version() < previous.state().version()) {
+        return previous;
+      }
+      // Only the latest state is replayed, so it must expect the version stored before the first one.
+      return (current.expectedVersion() == previous.state().version())
+        ? new Entry(current.state(), previous.expectedVersion())
+        : current;
+    });
+  }
+
+  public synchronized void replayed(final @NotNull Entry entry) throws IOException {
+    // A newer state spooled during the replay is kept for the next one.
+    if (this.entries.remove(entry.state().id(), entry) && this.entries.isEmpty()) {
+      this.clear();
+    }
+  }
+
+  public synchronized void reject(final @NotNull Entry entry) throws IOException {
+    try (final FileChannel rejectedChannel = FileChannel.open(this.rejectedFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      write(rejectedChannel, List.of(entry));
+    }
+    this.replayed(entry);
+  }
+
+  public @NotNull Path rejectedFile() {
+    return this.rejectedFile;
+  }
+
+  public synchronized void discard(final @NotNull String id) throws IOException {
+    if ((this.entries.remove(id) != null) && this.entries.isEmpty()) {
+      this.clear();
+    }
+  }
+
+  private void clear() throws IOException {
+    this.close();
+    Files.deleteIfExists(this.file);
+  }
+
+  public synchronized void close() throws IOException {
+    if (this.channel != null) {
+      this.channel.close();
+      this.channel = null;
+    }
+  }
+
+  public record Entry(@NotNull PlayerAggregateRoot state, long expectedVersion) {}
+}
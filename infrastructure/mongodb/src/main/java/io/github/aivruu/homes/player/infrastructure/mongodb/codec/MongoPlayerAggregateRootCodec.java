@@ -21,6 +21,7 @@ import io.github.aivruu.homes.home.infrastructure.mongodb.MongoHomeModelEntityCo
 import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
 import io.github.aivruu.homes.player.domain.PlayerModelEntity;
 import org.bson.BsonReader;
+import org.bson.BsonSerializationException;
 import org.bson.BsonType;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
@@ -35,24 +36,47 @@ public enum MongoPlayerAggregateRootCodec implements Codec<PlayerAggregateRoot>
 
   @Override
   public PlayerAggregateRoot decode(final BsonReader reader, final DecoderContext decoderContext) {
-    reader.readStartArray();
-    final List<HomeModelEntity> homes = new ArrayList<>();
+    String id = null;
+    long version = 0;
+    final List<HomeModelEntity> homes = new ArrayList<>(PlayerAggregateRoot.MAX_PLAYER_HOMES_ALLOWED);
+    reader.readStartDocument();
     while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
-      homes.add(decoderContext.decodeWithChildContext(MongoHomeModelEntityCodec.INSTANCE, reader));
+      // Fields added by the database, such as '_id', are skipped.
+      switch (reader.readName()) {
+        case "id" -> id = reader.readString();
+        case "version" -> version = reader.readInt64();
+        case "homes" -> {
+          reader.readStartArray();
+          while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            homes.add(decoderContext.decodeWithChildContext(MongoHomeModelEntityCodec.INSTANCE, reader));
+          }
+          reader.readEndArray();
+        }
+        default -> reader.skipValue();
+      }
     }
-    reader.readEndArray();
-    return new PlayerAggregateRoot(new PlayerModelEntity(reader.readString("id"), homes.toArray(HomeModelEntity[]::new)));
+    reader.readEndDocument();
+    if (id == null) {
+      throw new BsonSerializationException("Player's id is missing from the document.");
+    }
+    final PlayerAggregateRoot playerAggregateRoot = new PlayerAggregateRoot(new PlayerModelEntity(id, homes.toArray(HomeModelEntity[]::new)), version);
+    // It matches the stored document, so next mutations can be applied to it instead of rewriting it.
+    playerAggregateRoot.drainMutations();
+    return playerAggregateRoot;
   }
 
   @Override
   public void encode(final BsonWriter writer, final PlayerAggregateRoot playerAggregateRoot, final EncoderContext encoderContext) {
+    writer.writeStartDocument();
     writer.writeString("id", playerAggregateRoot.id());
+    writer.writeInt64("version", playerAggregateRoot.version());
     writer.writeStartArray("homes");
     for (final HomeModelEntity homeModel : playerAggregateRoot.homes()) {
       if (homeModel == null) continue;
       encoderContext.encodeWithChildContext(MongoHomeModelEntityCodec.INSTANCE, writer, homeModel);
     }
     writer.writeEndArray();
+    writer.writeEndDocument();
   }
 
   @Override
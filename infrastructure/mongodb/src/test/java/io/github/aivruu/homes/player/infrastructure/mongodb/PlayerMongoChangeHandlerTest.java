@@ -0,0 +1,170 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.mongodb;
+
+import io.github.aivruu.homes.aggregate.domain.repository.AggregateRootRepository;
+import io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository;
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
+import io.github.aivruu.homes.persistence.application.AggregateRootWriteBehindQueue;
+import io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import org.bson.BsonString;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class PlayerMongoChangeHandlerTest {
+  private final CachedPlayers cachedPlayers = new CachedPlayers();
+  private final PlayerAggregateRootRegistry playerAggregateRootRegistry = new PlayerAggregateRootRegistry(
+    this.cachedPlayers, new StoredPlayers(), new AggregateRootWriteBehindQueue<>(new StoredPlayers(), 0, 1));
+  // Tasks for the main-thread, ran by each test when the main-thread would.
+  private final List<Runnable> mainThreadTasks = new ArrayList<>();
+
+  @Test
+  void storedChangesRefreshOnlyCachedPlayers() {
+    final PlayerAggregateRoot playerAggregateRoot = player("online", 1);
+    // Written once, so it has no changes that the stored ones would overwrite.
+    playerAggregateRoot.drainMutations();
+    this.playerAggregateRootRegistry.register(playerAggregateRoot);
+    final PlayerMongoChangeHandler changeHandler = new PlayerMongoChangeHandler(this.playerAggregateRootRegistry, this.mainThreadTasks::add);
+
+    changeHandler.stored(new BsonString("offline-document"), player("offline", 2, home("home")));
+    assertTrue(this.mainThreadTasks.isEmpty());
+    changeHandler.stored(new BsonString("online-document"), player("online", 2, home("home")));
+    this.runMainThreadTasks();
+    assertEquals(2, playerAggregateRoot.version());
+    assertNotNull(playerAggregateRoot.home("home"));
+  }
+
+  @Test
+  void deletedOnlinePlayersKeepTheirAggregateRootWithoutHomes() {
+    final PlayerAggregateRoot playerAggregateRoot = player("online", 1, home("home"));
+    this.playerAggregateRootRegistry.register(playerAggregateRoot);
+    final PlayerMongoChangeHandler changeHandler = new PlayerMongoChangeHandler(this.playerAggregateRootRegistry, this.mainThreadTasks::add);
+    changeHandler.stored(new BsonString("online-document"), player("online", 1, home("home")));
+    this.runMainThreadTasks();
+
+    // Without pre-images, the deleted player is known by its document's id only.
+    changeHandler.deleted(new BsonString("online-document"), null);
+    this.runMainThreadTasks();
+    assertSame(playerAggregateRoot, this.playerAggregateRootRegistry.findInCache("online"));
+    assertEquals(0, playerAggregateRoot.homes().length);
+    // Stored again on next save.
+    assertTrue(playerAggregateRoot.isDirty());
+  }
+
+  @Test
+  void changesAreDroppedOnceTheMainThreadRejectsThem() {
+    this.playerAggregateRootRegistry.register(player("online", 1));
+    final PlayerMongoChangeHandler changeHandler = new PlayerMongoChangeHandler(this.playerAggregateRootRegistry, task -> {
+      throw new RejectedExecutionException("The plugin is disabled.");
+    });
+    changeHandler.stored(new BsonString("online-document"), player("online", 2));
+    changeHandler.deleted(new BsonString("online-document"), null);
+
+    final PlayerMongoChangeHandler closedChangeHandler = new PlayerMongoChangeHandler(this.playerAggregateRootRegistry, this.mainThreadTasks::add);
+    closedChangeHandler.close();
+    closedChangeHandler.stored(new BsonString("online-document"), player("online", 2));
+    assertTrue(this.mainThreadTasks.isEmpty());
+  }
+
+  private void runMainThreadTasks() {
+    final List<Runnable> tasks = new ArrayList<>(this.mainThreadTasks);
+    this.mainThreadTasks.clear();
+    tasks.forEach(Runnable::run);
+  }
+
+  private static @NotNull PlayerAggregateRoot player(final @NotNull String id, final long version, final @NotNull HomeModelEntity... homes) {
+    return new PlayerAggregateRoot(new PlayerModelEntity(id, homes), version);
+  }
+
+  private static @NotNull HomeModelEntity home(final @NotNull String id) {
+    return new HomeModelEntity(id, new HomePositionValueObject(null, 1, 64, 2));
+  }
+
+  private static final class CachedPlayers implements AggregateRootRepository<PlayerAggregateRoot> {
+    private final Map<String, PlayerAggregateRoot> playerAggregateRoots = new HashMap<>();
+
+    @Override
+    public @Nullable PlayerAggregateRoot findSync(final @NotNull String id) {
+      return this.playerAggregateRoots.get(id);
+    }
+
+    @Override
+    public @NotNull Collection<PlayerAggregateRoot> findAllSync() {
+      return this.playerAggregateRoots.values();
+    }
+
+    @Override
+    public void saveSync(final @NotNull PlayerAggregateRoot aggregateRoot) {
+      this.playerAggregateRoots.put(aggregateRoot.id(), aggregateRoot);
+    }
+
+    @Override
+    public boolean existsSync(final @NotNull String id) {
+      return this.playerAggregateRoots.containsKey(id);
+    }
+
+    @Override
+    public @Nullable PlayerAggregateRoot deleteSync(final @NotNull String id) {
+      return this.playerAggregateRoots.remove(id);
+    }
+
+    @Override
+    public void clearSync() {
+      this.playerAggregateRoots.clear();
+    }
+  }
+
+  private static final class StoredPlayers implements AsyncAggregateRootRepository<PlayerAggregateRoot> {
+    @Override
+    public @NotNull CompletableFuture<@Nullable PlayerAggregateRoot> findAsync(final @NotNull String id) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Boolean> existsAsync(final @NotNull String id) {
+      return CompletableFuture.completedFuture(false);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<AggregateRootSaveResult> saveAsync(final @NotNull PlayerAggregateRoot aggregateRoot) {
+      return CompletableFuture.completedFuture(AggregateRootSaveResult.saved());
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Boolean> deleteAsync(final @NotNull String id) {
+      return CompletableFuture.completedFuture(false);
+    }
+  }
+}
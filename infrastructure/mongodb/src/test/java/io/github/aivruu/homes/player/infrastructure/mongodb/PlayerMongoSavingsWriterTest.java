@@ -0,0 +1,195 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.mongodb;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.domain.HomeMutation;
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class PlayerMongoSavingsWriterTest {
+  private final List<List<WriteModel<PlayerAggregateRoot>>> bulkWrites = new ArrayList<>();
+  private final List<BulkWriteOptions> bulkWriteOptions = new ArrayList<>();
+
+  @Test
+  void conflictOfOnePlayerDoesNotFailTheOthers() {
+    final PlayerAggregateRoot.Saving conflicting = new PlayerAggregateRoot.Saving(player("first", 2), 1, null);
+    final PlayerAggregateRoot.Saving replaced = new PlayerAggregateRoot.Saving(player("second", 1), 0, null);
+    final PlayerAggregateRoot.Saving mutated = new PlayerAggregateRoot.Saving(player("third", 4, home("home")), 3,
+      List.of(new HomeMutation.Added(home("home"))));
+    final PlayerMongoSavingsWriter writer = this.writer((writes, options) -> {
+      if (options.isOrdered()) {
+        return matched(writes.size());
+      }
+      // The first player's stored version doesn't match, so its upsert is rejected.
+      throw bulkWriteException(new BulkWriteError(PlayerMongoSavingsWriter.DUPLICATE_KEY_ERROR_CODE, "duplicate key", new BsonDocument(), 0));
+    });
+
+    final AggregateRootSaveResult[] results = writer.write(List.of(conflicting, replaced, mutated));
+    assertTrue(results[0].wasConflict());
+    assertTrue(results[1].wasSaved());
+    assertTrue(results[2].wasSaved());
+    // Mutations are written alone in order, while the full-writes of the batch are written together without it.
+    assertEquals(2, this.bulkWrites.size());
+    assertTrue(this.bulkWriteOptions.get(0).isOrdered());
+    assertFalse(this.bulkWriteOptions.get(1).isOrdered());
+    final List<WriteModel<PlayerAggregateRoot>> replaces = this.bulkWrites.get(1);
+    assertEquals(2, replaces.size());
+    assertSame(conflicting.state(), replacement(replaces.get(0)));
+    assertSame(replaced.state(), replacement(replaces.get(1)));
+  }
+
+  @Test
+  void playersWhoseMutationsWereNotAppliedAreWrittenFully() {
+    final PlayerAggregateRoot.Saving changed = new PlayerAggregateRoot.Saving(player("first", 2), 1,
+      List.of(new HomeMutation.Removed("home")));
+    final PlayerAggregateRoot.Saving mutated = new PlayerAggregateRoot.Saving(player("second", 2), 1,
+      List.of(new HomeMutation.Removed("home")));
+    final PlayerMongoSavingsWriter writer = this.writer((writes, options) -> {
+      if (!options.isOrdered()) {
+        return matched(writes.size());
+      }
+      // The first player's document was changed by another server, so none of its writes matched.
+      return (this.bulkWrites.size() == 1) ? matched(0) : matched(writes.size());
+    });
+
+    final AggregateRootSaveResult[] results = writer.write(List.of(changed, mutated));
+    assertTrue(results[0].wasSaved());
+    assertTrue(results[1].wasSaved());
+    assertEquals(3, this.bulkWrites.size());
+    final List<WriteModel<PlayerAggregateRoot>> replaces = this.bulkWrites.get(2);
+    assertEquals(1, replaces.size());
+    assertSame(changed.state(), replacement(replaces.get(0)));
+  }
+
+  @Test
+  void mutationsAreWrittenInOrderWithTheVersionSetLast() {
+    final HomeModelEntity added = home("added");
+    final HomePositionValueObject position = new HomePositionValueObject(null, 5, 70, 6);
+    final PlayerAggregateRoot.Saving mutated = new PlayerAggregateRoot.Saving(player("first", 4, added), 3, List.of(
+      new HomeMutation.Added(added),
+      new HomeMutation.Removed("removed"),
+      new HomeMutation.PositionChanged("added", position)));
+    final PlayerMongoSavingsWriter writer = this.writer((writes, options) -> matched(writes.size()));
+
+    assertTrue(writer.write(List.of(mutated))[0].wasSaved());
+    assertEquals(1, this.bulkWrites.size());
+    assertTrue(this.bulkWriteOptions.get(0).isOrdered());
+    final List<WriteModel<PlayerAggregateRoot>> writes = this.bulkWrites.get(0);
+    assertEquals(5, writes.size());
+    final Bson storedAt = PlayerMongoSavingsWriter.storedAt("first", 3, 4);
+    for (final WriteModel<PlayerAggregateRoot> write : writes) {
+      assertEquals(storedAt, assertInstanceOf(UpdateOneModel.class, write).getFilter());
+    }
+    // An added home is pulled first, so a home already written by a previous attempt isn't duplicated.
+    assertEquals(Updates.pull("homes", Filters.eq("id", "added")), update(writes.get(0)).getUpdate());
+    assertEquals(Updates.push("homes", added), update(writes.get(1)).getUpdate());
+    assertEquals(Updates.pull("homes", Filters.eq("id", "removed")), update(writes.get(2)).getUpdate());
+    final UpdateOneModel<PlayerAggregateRoot> positionChange = update(writes.get(3));
+    assertEquals(Updates.set("homes.$[home].position", position), positionChange.getUpdate());
+    assertEquals(List.of(Filters.eq("home.id", "added")), positionChange.getOptions().getArrayFilters());
+    assertEquals(Updates.set("version", 4L), update(writes.get(4)).getUpdate());
+  }
+
+  @Test
+  void onlyPlayersWhoseMutationsFailedAreWrittenFully() {
+    final PlayerAggregateRoot.Saving failed = new PlayerAggregateRoot.Saving(player("first", 2), 1,
+      List.of(new HomeMutation.Removed("home")));
+    final PlayerAggregateRoot.Saving mutated = new PlayerAggregateRoot.Saving(player("second", 2), 1,
+      List.of(new HomeMutation.Removed("home")));
+    final PlayerMongoSavingsWriter writer = this.writer((writes, options) -> {
+      if (!options.isOrdered()) {
+        // Another server stored the first player meanwhile, so its full-write is rejected too.
+        throw bulkWriteException(new BulkWriteError(PlayerMongoSavingsWriter.DUPLICATE_KEY_ERROR_CODE, "duplicate key", new BsonDocument(), 0));
+      }
+      if (this.bulkWrites.size() == 1) {
+        // The version's update failed, after the home was already pulled.
+        throw bulkWriteException(new BulkWriteError(2, "bad value", new BsonDocument(), 1));
+      }
+      return matched(writes.size());
+    });
+
+    final AggregateRootSaveResult[] results = writer.write(List.of(failed, mutated));
+    assertTrue(results[0].wasConflict());
+    assertTrue(results[1].wasSaved());
+    assertEquals(3, this.bulkWrites.size());
+    final List<WriteModel<PlayerAggregateRoot>> replaces = this.bulkWrites.get(2);
+    assertEquals(1, replaces.size());
+    assertSame(failed.state(), replacement(replaces.get(0)));
+  }
+
+  private @NotNull PlayerMongoSavingsWriter writer(final @NotNull PlayerMongoSavingsWriter.BulkWriter bulkWriter) {
+    return new PlayerMongoSavingsWriter((writes, options) -> {
+      this.bulkWrites.add(List.copyOf(writes));
+      this.bulkWriteOptions.add(options);
+      return bulkWriter.bulkWrite(writes, options);
+    });
+  }
+
+  private static @NotNull BulkWriteResult matched(final int matchedCount) {
+    return BulkWriteResult.acknowledged(0, matchedCount, 0, matchedCount, List.of(), List.of());
+  }
+
+  private static @NotNull MongoBulkWriteException bulkWriteException(final @NotNull BulkWriteError writeError) {
+    return new MongoBulkWriteException(matched(0), List.of(writeError), null, new ServerAddress(), Set.of());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static @NotNull UpdateOneModel<PlayerAggregateRoot> update(final @NotNull WriteModel<PlayerAggregateRoot> write) {
+    return assertInstanceOf(UpdateOneModel.class, write);
+  }
+
+  private static @NotNull PlayerAggregateRoot replacement(final @NotNull WriteModel<PlayerAggregateRoot> write) {
+    final ReplaceOneModel<PlayerAggregateRoot> replace = assertInstanceOf(ReplaceOneModel.class, write);
+    assertTrue(replace.getReplaceOptions().isUpsert());
+    return replace.getReplacement();
+  }
+
+  private static @NotNull PlayerAggregateRoot player(final @NotNull String id, final long version, final @NotNull HomeModelEntity... homes) {
+    return new PlayerAggregateRoot(new PlayerModelEntity(id, homes), version);
+  }
+
+  private static @NotNull HomeModelEntity home(final @NotNull String id) {
+    return new HomeModelEntity(id, new HomePositionValueObject(null, 1, 64, 2));
+  }
+}
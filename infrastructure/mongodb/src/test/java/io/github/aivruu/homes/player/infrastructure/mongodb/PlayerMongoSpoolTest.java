@@ -0,0 +1,168 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure.mongodb;
+
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class PlayerMongoSpoolTest {
+  @TempDir
+  Path directory;
+  private PlayerMongoSpool spool;
+
+  @AfterEach
+  void close() throws IOException {
+    if (this.spool != null) {
+      this.spool.close();
+    }
+  }
+
+  @Test
+  void entriesAreRestoredOnOpen() throws IOException {
+    final Path file = this.directory.resolve("players-spool.bson");
+    this.spool = open(file);
+    this.spool.append(List.of(
+      new PlayerMongoSpool.Entry(player("first", 2, home("home")), 1),
+      new PlayerMongoSpool.Entry(player("second", 1), 0)));
+    this.spool.close();
+
+    this.spool = open(file);
+    assertEquals(2, this.spool.entries().size());
+    assertEquals(1, entryOf(this.spool, "first").expectedVersion());
+    final PlayerAggregateRoot first = this.spool.find("first");
+    assertNotNull(first);
+    assertEquals(2, first.version());
+    assertNotNull(first.home("home"));
+    assertEquals(64, first.home("home").position().y());
+    assertEquals(1, this.spool.find("second").version());
+  }
+
+  @Test
+  void tornDocumentIsDiscardedOnOpen() throws IOException {
+    final Path file = this.directory.resolve("players-spool.bson");
+    this.spool = open(file);
+    this.spool.append(List.of(new PlayerMongoSpool.Entry(player("first", 1), 0)));
+    this.spool.close();
+    final long intactSize = Files.size(file);
+    // A document's length announcing more bytes than were written before a crash.
+    final ByteBuffer tornDocument = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN).putInt(128).putInt(1).putInt(2);
+    Files.write(file, tornDocument.array(), StandardOpenOption.APPEND);
+
+    this.spool = open(file);
+    assertEquals(intactSize, Files.size(file));
+    assertEquals(1, this.spool.entries().size());
+    assertEquals(1, this.spool.find("first").version());
+    // Next documents are appended right after the last intact one.
+    this.spool.append(List.of(new PlayerMongoSpool.Entry(player("first", 2), 1)));
+    this.spool.close();
+    this.spool = open(file);
+    assertEquals(2, this.spool.find("first").version());
+    assertEquals(0, entryOf(this.spool, "first").expectedVersion());
+  }
+
+  @Test
+  void onlyTheLatestStateIsReplayedWithTheFirstExpectedVersion() throws IOException {
+    this.spool = open(this.directory.resolve("players-spool.bson"));
+    this.spool.append(List.of(new PlayerMongoSpool.Entry(player("first", 2), 1)));
+    this.spool.append(List.of(new PlayerMongoSpool.Entry(player("first", 3), 2)));
+    // Appended out of order, so it doesn't replace the newer state.
+    this.spool.append(List.of(new PlayerMongoSpool.Entry(player("first", 1), 0)));
+
+    assertEquals(1, this.spool.entries().size());
+    final PlayerMongoSpool.Entry entry = entryOf(this.spool, "first");
+    assertEquals(3, entry.state().version());
+    assertEquals(1, entry.expectedVersion());
+  }
+
+  @Test
+  void fileIsDeletedOnceEveryEntryIsReplayed() throws IOException {
+    final Path file = this.directory.resolve("players-spool.bson");
+    this.spool = open(file);
+    this.spool.append(List.of(new PlayerMongoSpool.Entry(player("first", 1), 0)));
+    this.spool.append(List.of(new PlayerMongoSpool.Entry(player("second", 1), 0)));
+    final PlayerMongoSpool.Entry first = entryOf(this.spool, "first");
+    this.spool.replayed(first);
+    assertTrue(Files.exists(file));
+
+    // A newer state spooled during the replay is kept for the next one.
+    final PlayerMongoSpool.Entry second = entryOf(this.spool, "second");
+    this.spool.append(List.of(new PlayerMongoSpool.Entry(player("second", 2), 1)));
+    this.spool.replayed(second);
+    assertEquals(2, this.spool.find("second").version());
+
+    this.spool.replayed(entryOf(this.spool, "second"));
+    assertTrue(this.spool.isEmpty());
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  void rejectedEntriesAreMovedToTheRejectedFile() throws IOException {
+    final Path file = this.directory.resolve("players-spool.bson");
+    this.spool = open(file);
+    this.spool.append(List.of(new PlayerMongoSpool.Entry(player("first", 1), 0)));
+    this.spool.reject(entryOf(this.spool, "first"));
+
+    assertTrue(this.spool.isEmpty());
+    assertNull(this.spool.find("first"));
+    assertFalse(Files.exists(file));
+    assertTrue(Files.size(this.spool.rejectedFile()) > 0);
+  }
+
+  private static @NotNull PlayerMongoSpool open(final @NotNull Path file) throws IOException {
+    final PlayerMongoSpool spool = new PlayerMongoSpool(file);
+    spool.open();
+    return spool;
+  }
+
+  private static @Nullable PlayerMongoSpool.Entry entryOf(final @NotNull PlayerMongoSpool spool, final @NotNull String id) {
+    for (final PlayerMongoSpool.Entry entry : spool.entries()) {
+      if (entry.state().id().equals(id)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private static @NotNull PlayerAggregateRoot player(final @NotNull String id, final long version, final @NotNull HomeModelEntity... homes) {
+    return new PlayerAggregateRoot(new PlayerModelEntity(id, homes), version);
+  }
+
+  private static @NotNull HomeModelEntity home(final @NotNull String id) {
+    return new HomeModelEntity(id, new HomePositionValueObject(null, 1, 64, 2));
+  }
+}
@@ -14,6 +14,7 @@ dependencies {
   api(project(":${rootProject.name}-api"))
   api(project(":${rootProject.name}-json"))
   api(project(":${rootProject.name}-mongodb"))
+  api(project(":${rootProject.name}-log"))
 
   compileOnlyApi(libs.paper)
   compileOnlyApi(libs.configurate)
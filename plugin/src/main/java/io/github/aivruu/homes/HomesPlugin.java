@@ -28,35 +28,61 @@ import io.github.aivruu.homes.config.application.object.ConfigurationConfigurati
 import io.github.aivruu.homes.config.application.object.MessagesConfigurationModel;
 import io.github.aivruu.homes.home.application.HomeCreatorService;
 import io.github.aivruu.homes.home.application.HomePositionUpdater;
+import io.github.aivruu.homes.persistence.application.AggregateRootAutosaveScheduler;
+import io.github.aivruu.homes.persistence.application.AggregateRootWriteBehindQueue;
 import io.github.aivruu.homes.player.application.listener.PlayerRegistryListener;
 import io.github.aivruu.homes.persistence.domain.InfrastructureAggregateRootRepository;
 import io.github.aivruu.homes.persistence.infrastructure.ExecutorHelper;
+import io.github.aivruu.homes.persistence.infrastructure.ExecutorType;
 import io.github.aivruu.homes.persistence.infrastructure.InfrastructureRepositoryController;
 import io.github.aivruu.homes.player.application.PlayerHomeController;
 import io.github.aivruu.homes.player.application.PlayerManagerService;
 import io.github.aivruu.homes.player.application.registry.PlayerAggregateRootRegistry;
 import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
 import io.github.aivruu.homes.player.infrastructure.PlayerCacheAggregateRootRepository;
+import io.github.aivruu.homes.player.infrastructure.PlayerCacheSnapshot;
+import io.github.aivruu.homes.player.infrastructure.PlayerRecoverySpool;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
 import io.papermc.paper.command.brigadier.Commands;
 import io.papermc.paper.plugin.lifecycle.event.types.LifecycleEvents;
 import net.kyori.adventure.text.logger.slf4j.ComponentLogger;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.IllegalPluginAccessException;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public final class HomesPlugin extends JavaPlugin implements Homes {
+  private static final long MIN_POOL_SHUTDOWN_MILLIS = 1000;
   private final ComponentLogger logger = super.getComponentLogger();
   private @Nullable ConfigurationContainer<ConfigurationConfigurationModel> configurationModelContainer;
   private @Nullable ConfigurationContainer<MessagesConfigurationModel> messagesModelContainer;
   private AggregateRootRepository<PlayerAggregateRoot> playerAggregateRootRepository;
   private HomeCreatorService homeCreatorService;
   private HomePositionUpdater homePositionUpdater;
+  private AggregateRootWriteBehindQueue<PlayerAggregateRoot> playerWriteBehindQueue;
   private AggregateRootRegistry<PlayerAggregateRoot> playerAggregateRootRegistry;
+  private AggregateRootAutosaveScheduler<PlayerAggregateRoot> playerAutosaveScheduler;
   private PlayerHomeController playerHomeController;
   private PlayerManagerService playerManagerService;
   private InfrastructureRepositoryController infrastructureRepositoryController;
+  private PlayerRecoverySpool playerRecoverySpool;
+  private PlayerCacheSnapshot playerCacheSnapshot;
 
   @Override
   public @NotNull AggregateRootRepository<PlayerAggregateRoot> playerCacheRepository() {
@@ -74,6 +100,14 @@ public final class HomesPlugin extends JavaPlugin implements Homes {
     return this.playerAggregateRootRegistry;
   }
 
+  @Override
+  public @NotNull AggregateRootWriteBehindQueue<PlayerAggregateRoot> playerSaveQueue() {
+    if (this.playerWriteBehindQueue == null) {
+      throw new IllegalStateException("Player save-queue is not available yet.");
+    }
+    return this.playerWriteBehindQueue;
+  }
+
   @Override
   public @NotNull HomeCreatorService homeCreatorService() {
     if (this.homeCreatorService == null) {
@@ -126,9 +160,15 @@ public final class HomesPlugin extends JavaPlugin implements Homes {
       return;
     }
     // Thread-pool creation before infrastructure-repositories initialization
-    ExecutorHelper.createPool(this.configurationModelContainer.model().threadPoolSize);
+    final ConfigurationConfigurationModel configuration = this.configurationModelContainer.model();
+    ExecutorHelper.createPool(
+      configuration.executorType.equals("VIRTUAL") ? ExecutorType.VIRTUAL : ExecutorType.PLATFORM,
+      configuration.threadPoolSize,
+      configuration.executorQueueCapacity,
+      configuration.executorCallerRunsWhenFull,
+      Bukkit::isPrimaryThread);
     this.logger.info("Initializing infrastructure-repository controller and selecting repository implementation.");
-    this.infrastructureRepositoryController = new InfrastructureRepositoryController(super.getDataPath(), this.configurationModelContainer.model());
+    this.infrastructureRepositoryController = new InfrastructureRepositoryController(this.logger, super.getDataPath(), configuration);
     if (!this.infrastructureRepositoryController.selectAndInitialize()) {
       this.logger.error("""
         Repository controller couldn't initialize the required infrastructure-repository implementation.
@@ -137,9 +177,37 @@ public final class HomesPlugin extends JavaPlugin implements Homes {
     }
     this.logger.info("Initializing registry and application services for players management.");
     final InfrastructureAggregateRootRepository<PlayerAggregateRoot> playerInfrastructureAggregateRootRepository = this.infrastructureRepositoryController.playerInfrastructureAggregateRootRepository();
-    this.playerAggregateRootRegistry = new PlayerAggregateRootRegistry(this.playerAggregateRootRepository, playerInfrastructureAggregateRootRepository);
-    this.playerManagerService = new PlayerManagerService(this.logger, this.playerAggregateRootRegistry);
+    this.playerRecoverySpool = new PlayerRecoverySpool(super.getDataPath().resolve("recovery.log"));
+    this.recoverPlayers(playerInfrastructureAggregateRootRepository);
+    this.playerWriteBehindQueue = new AggregateRootWriteBehindQueue<>(playerInfrastructureAggregateRootRepository,
+      configuration.saveQueueFlushIntervalMillis, configuration.saveQueueBatchSize);
+    this.playerWriteBehindQueue.start();
+    this.playerAggregateRootRegistry = new PlayerAggregateRootRegistry(this.playerAggregateRootRepository,
+      playerInfrastructureAggregateRootRepository, this.playerWriteBehindQueue);
+    this.playerManagerService = new PlayerManagerService(this.logger, this.playerAggregateRootRegistry,
+      configuration.playerLoadTimeoutMillis, configuration.playerHandoffTimeoutMillis);
+    this.playerCacheSnapshot = new PlayerCacheSnapshot(super.getDataPath().resolve("cache.snapshot"));
+    this.restorePlayers(configuration.cacheSnapshotMaxAgeMillis);
     this.playerHomeController = new PlayerHomeController(this.playerAggregateRootRegistry);
+    this.playerAutosaveScheduler = new AggregateRootAutosaveScheduler<>(this.logger, this.playerAggregateRootRegistry,
+      configuration.autosaveIntervalMillis, configuration.autosaveMaxWritesPerSecond);
+    this.playerAutosaveScheduler.start();
+    if (configuration.mongoChangeStreamEnabled) {
+      final Executor mainThreadExecutor = super.getServer().getScheduler().getMainThreadExecutor(this);
+      // Tasks can't be scheduled once the plugin is disabled, which the watcher handles as a rejection.
+      final Executor watcherExecutor = task -> {
+        try {
+          mainThreadExecutor.execute(task);
+        } catch (final IllegalPluginAccessException exception) {
+          throw new RejectedExecutionException(exception);
+        }
+      };
+      if (this.infrastructureRepositoryController.watchPlayerChanges(this.playerAggregateRootRegistry, watcherExecutor)) {
+        this.logger.info("Watching the players' collection for changes made by other servers.");
+      } else {
+        this.logger.warn("Players' changes can only be watched when using the MONGODB infrastructure-type.");
+      }
+    }
 
     this.logger.info("Initializing application services for homes management.");
     this.homePositionUpdater = new HomePositionUpdater(this.playerAggregateRootRegistry);
@@ -156,13 +224,46 @@ public final class HomesPlugin extends JavaPlugin implements Homes {
         this.homePositionUpdater
       )
     );
-    super.getServer().getPluginManager().registerEvents(new PlayerRegistryListener(this.logger, this.playerManagerService), this);
+    super.getServer().getPluginManager().registerEvents(new PlayerRegistryListener(this.logger, this.messagesModelContainer, this.playerManagerService), this);
 
     this.logger.info("Plugin's API has been initialized.");
     HomesProvider.set(this);
     this.logger.info("The plugin has been fully enabled!");
   }
 
+  private void recoverPlayers(final @NotNull InfrastructureAggregateRootRepository<PlayerAggregateRoot> playerInfrastructureAggregateRootRepository) {
+    if (this.playerRecoverySpool.isEmpty()) {
+      return;
+    }
+    this.logger.info("Saving the players' information that couldn't be saved during last shutdown.");
+    try {
+      final PlayerRecoverySpool.Replay replay = this.playerRecoverySpool.replay(playerInfrastructureAggregateRootRepository);
+      this.logger.info("Recovered {} players' information from the recovery-file.", replay.recoveredPlayers());
+      if (!replay.conflictingPlayerIds().isEmpty()) {
+        this.logger.warn("The recovered information of the players {} was discarded, as other servers saved different information for them meanwhile.",
+          replay.conflictingPlayerIds());
+      }
+      if (!this.playerRecoverySpool.isEmpty()) {
+        this.logger.warn("Some players' information couldn't be saved yet, it's kept in the recovery-file for next start-up.");
+      }
+    } catch (final IOException exception) {
+      this.logger.error("The recovery-file couldn't be read, it's kept for next start-up.", exception);
+    }
+  }
+
+  private void restorePlayers(final long maxAgeMillis) {
+    try {
+      final List<PlayerAggregateRoot> restoredPlayerAggregateRoots = this.playerCacheSnapshot.read(maxAgeMillis);
+      if (restoredPlayerAggregateRoots.isEmpty()) {
+        return;
+      }
+      this.playerManagerService.restore(restoredPlayerAggregateRoots, System.currentTimeMillis() + maxAgeMillis);
+      this.logger.info("Restored {} players' information from the cache's snapshot.", restoredPlayerAggregateRoots.size());
+    } catch (final IOException exception) {
+      this.logger.warn("The cache's snapshot couldn't be read, players will be loaded from the infrastructure.", exception);
+    }
+  }
+
   @SuppressWarnings("UnstableApiUsage")
   private void registerCommands(final @NotNull AbstractRegistrableCommand... registrableCommands) {
     super.getLifecycleManager().registerEventHandler(LifecycleEvents.COMMANDS, eventHandler -> {
@@ -175,10 +276,28 @@ public final class HomesPlugin extends JavaPlugin implements Homes {
 
   @Override
   public void onDisable() {
+    if (this.playerAutosaveScheduler != null) {
+      this.playerAutosaveScheduler.close();
+    }
+    if (this.configurationModelContainer == null) {
+      return;
+    }
+    final long deadlineMillis = System.currentTimeMillis() + this.configurationModelContainer.model().shutdownSaveTimeoutMillis;
     this.logger.info("Verifying cache aggregate-root repositories availability for data saving and clean.");
-    if (this.playerAggregateRootRepository != null) {
-      for (final PlayerAggregateRoot playerAggregateRoot : this.playerAggregateRootRepository.findAllSync()) {
-        this.playerManagerService.handleAggregateRootSave(playerAggregateRoot);
+    final boolean savingPlayers = this.playerAggregateRootRepository != null && this.playerWriteBehindQueue != null;
+    final Map<CompletableFuture<AggregateRootSaveResult>, PlayerAggregateRoot> saves = savingPlayers
+      ? this.savePlayers(deadlineMillis)
+      : Map.of();
+    // Saves still running are given the remaining time, before closing the infrastructure they use.
+    if (!ExecutorHelper.shutdown(Math.max(MIN_POOL_SHUTDOWN_MILLIS, deadlineMillis - System.currentTimeMillis()))) {
+      this.logger.warn("Some infrastructure operations didn't finish in time and were interrupted.");
+    }
+    if (savingPlayers) {
+      // Checked once the pool stopped, so saves finished during its shutdown aren't spooled, and the spooled
+      // ones can't be written anymore.
+      final Set<String> unsavedIds = this.spoolUnsavedPlayers(saves);
+      if (this.playerCacheSnapshot != null && this.configurationModelContainer.model().cacheSnapshotMaxAgeMillis > 0) {
+        this.snapshotPlayers(unsavedIds);
       }
       this.playerAggregateRootRepository.clearSync();
     }
@@ -187,4 +306,78 @@ public final class HomesPlugin extends JavaPlugin implements Homes {
       this.infrastructureRepositoryController.close();
     }
   }
+
+  private void snapshotPlayers(final @NotNull Set<String> unsavedIds) {
+    // Players not saved can't be restored, as their snapshot wouldn't match their stored information.
+    final List<PlayerAggregateRoot> savedPlayerAggregateRoots = new ArrayList<>();
+    for (final PlayerAggregateRoot playerAggregateRoot : this.playerAggregateRootRepository.findAllSync()) {
+      if (!playerAggregateRoot.isDirty() && !unsavedIds.contains(playerAggregateRoot.id())) {
+        savedPlayerAggregateRoots.add(playerAggregateRoot);
+      }
+    }
+    try {
+      this.playerCacheSnapshot.write(savedPlayerAggregateRoots);
+      this.logger.info("Wrote {} players' information into the cache's snapshot.", savedPlayerAggregateRoots.size());
+    } catch (final IOException exception) {
+      this.logger.warn("The cache's snapshot couldn't be written, players will be loaded from the infrastructure.", exception);
+    }
+  }
+
+  private @NotNull Map<CompletableFuture<AggregateRootSaveResult>, PlayerAggregateRoot> savePlayers(final long deadlineMillis) {
+    // Keyed by their futures, as coalesced saves share the same one.
+    final Map<CompletableFuture<AggregateRootSaveResult>, PlayerAggregateRoot> saves = new IdentityHashMap<>();
+    for (final PlayerAggregateRoot playerAggregateRoot : this.playerAggregateRootRepository.findAllSync()) {
+      if (playerAggregateRoot.isDirty()) {
+        saves.put(this.playerAggregateRootRegistry.save(playerAggregateRoot), playerAggregateRoot);
+      }
+    }
+    // Every pending save is written at once, including the ones of players who already quit and the batch
+    // that was being written, and all of them are waited together until the deadline.
+    for (final AggregateRootWriteBehindQueue.FlushedSave<PlayerAggregateRoot> flushedSave : this.playerWriteBehindQueue.close()) {
+      saves.put(flushedSave.result(), flushedSave.aggregateRoot());
+    }
+    this.logger.info("Writing {} changed players' information into infrastructure.", saves.size());
+    try {
+      CompletableFuture.allOf(saves.keySet().toArray(CompletableFuture[]::new))
+        .get(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    } catch (final TimeoutException | ExecutionException ignored) {
+      // Unfinished saves are written to the recovery-file.
+    } catch (final InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    return saves;
+  }
+
+  private @NotNull Set<String> spoolUnsavedPlayers(final @NotNull Map<CompletableFuture<AggregateRootSaveResult>, PlayerAggregateRoot> saves) {
+    int savedPlayers = 0;
+    int conflictedPlayers = 0;
+    final List<PlayerAggregateRoot> unsavedPlayerAggregateRoots = new ArrayList<>();
+    final Set<String> unsavedIds = new HashSet<>();
+    for (final Map.Entry<CompletableFuture<AggregateRootSaveResult>, PlayerAggregateRoot> save : saves.entrySet()) {
+      final CompletableFuture<AggregateRootSaveResult> future = save.getKey();
+      final AggregateRootSaveResult result = (future.isDone() && !future.isCompletedExceptionally())
+        ? future.join()
+        : AggregateRootSaveResult.error();
+      if (result.wasError()) {
+        unsavedPlayerAggregateRoots.add(save.getValue());
+        unsavedIds.add(save.getValue().id());
+      } else if (result.wasConflict()) {
+        conflictedPlayers++;
+      } else {
+        savedPlayers++;
+      }
+    }
+    this.logger.info("Saved {} players' information, {} weren't saved as another server changed them.", savedPlayers, conflictedPlayers);
+    if (unsavedPlayerAggregateRoots.isEmpty()) {
+      return unsavedIds;
+    }
+    try {
+      this.playerRecoverySpool.spool(unsavedPlayerAggregateRoots);
+      this.logger.warn("{} players' information couldn't be saved in time, it was written to the recovery-file and will be saved on next start-up.",
+        unsavedPlayerAggregateRoots.size());
+    } catch (final IOException exception) {
+      this.logger.error("{} players' information couldn't be saved nor written to the recovery-file.", unsavedPlayerAggregateRoots.size(), exception);
+    }
+    return unsavedIds;
+  }
 }
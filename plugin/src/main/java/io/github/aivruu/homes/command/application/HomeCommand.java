@@ -101,7 +101,7 @@ public final class HomeCommand extends AbstractRegistrableCommand {
         .executes(ctx -> {
           final MessagesConfigurationModel messages = super.messages.model();
           final Player player = (Player) ctx.getSource().getSender();
-          final PlayerAggregateRoot playerAggregateRoot = this.playerManagerService.playerAggregateRootOf(player.getUniqueId().toString());
+          final PlayerAggregateRoot playerAggregateRoot = this.playerManagerService.playerAggregateRootOf(player.getUniqueId());
           if (playerAggregateRoot == null) {
             player.sendMessage(MiniMessageHelper.parse(messages.playerUnknownInfo));
             return Command.SINGLE_SUCCESS;
@@ -22,23 +22,119 @@ import org.spongepowered.configurate.objectmapping.meta.Comment;
 
 @ConfigSerializable
 public final class ConfigurationConfigurationModel implements ConfigurationInterface {
+  @Comment("""
+    The executor-type used for the plugin's infrastructure operations, there are two options:
+    - VIRTUAL: Uses a new virtual-thread per operation, so many players' loadings can wait for the storage
+      at the same time without tuning the thread-pool-size option.
+    - PLATFORM: Uses a fixed amount of threads, configured by the thread-pool-size option.""")
+  public String executorType = "PLATFORM";
+
   @Comment("""
     Represents the amount of threads that plugin's Executor will be able to use, this threads
     are used for asynchronous-operations for the plugin's infrastructure, such as load or save information into
-    persistent-storage. If you don't know about this, don't touch it""")
+    persistent-storage. Saves write a snapshot of the players' information, so it's safe to use more than one
+    thread. If you don't know about this, don't touch it""")
   public int threadPoolSize = 1;
 
   @Comment("""
-    The infrastructure-type to use for the players' information storage, there are two options:
+    The max amount of operations waiting for a thread when using the PLATFORM executor-type. Once reached,
+    new operations are run by the thread requesting them if executor-caller-runs-when-full is enabled,
+    slowing it down, otherwise they fail.""")
+  public int executorQueueCapacity = 1024;
+
+  @Comment("""
+    Whether operations requested while the executor's queue is full are run by the requesting thread.
+    They're never run by the server's main-thread, so its ticks aren't blocked by I/O.""")
+  public boolean executorCallerRunsWhenFull = false;
+
+  @Comment("""
+    The milliseconds between each write of the pending players' information into the infrastructure.
+    Saves requested for the same player during this time are merged into a single write.
+    Use 0 to write the information directly when requested.""")
+  public long saveQueueFlushIntervalMillis = 1000;
+
+  @Comment("The max amount of players' information written at the same time by the save-queue.")
+  public int saveQueueBatchSize = 64;
+
+  @Comment("""
+    The milliseconds between each autosave of the connected players whose homes were changed, so a crash
+    only loses the changes made since the last autosave. Every autosave starts with a small random delay,
+    and its writes are spread over half of this interval. Use 0 to only save players on quit and shutdown.""")
+  public long autosaveIntervalMillis = 300000;
+
+  @Comment("The max amount of players' information written per second by autosaves, use 0 for no limit.")
+  public int autosaveMaxWritesPerSecond = 20;
+
+  @Comment("""
+    The max milliseconds to wait for the players' information saving during shutdown. Information that isn't
+    saved in time is written to the 'recovery.log' file, and saved into the infrastructure on next start-up.""")
+  public long shutdownSaveTimeoutMillis = 10000;
+
+  @Comment("""
+    The max time in milliseconds, since the last shutdown, during which rejoining players are loaded from the
+    cache's snapshot written on it, if their stored version didn't change meanwhile, so only their version is
+    read from the infrastructure. Use 0 to disable the snapshot.""")
+  public long cacheSnapshotMaxAgeMillis = 60000;
+
+  @Comment("""
+    The max milliseconds to wait for a player's information loading during login, if the infrastructure
+    doesn't respond in time, the player is disconnected instead of hanging the login.""")
+  public long playerLoadTimeoutMillis = 5000;
+
+  @Comment("""
+    The max milliseconds to wait during login for a player's information that is still being saved by another
+    server sharing the same MongoDB, before loading its last stored state. It must be lower than the
+    player-load-timeout-millis option.""")
+  public long playerHandoffTimeoutMillis = 3000;
+
+  @Comment("""
+    The infrastructure-type to use for the players' information storage, there are four options:
     - MONGODB: Uses the database to store the information.
-    - JSON: Uses json-files for information storing at pre-defined directories.""")
+    - JSON: Uses json-files for information storing at pre-defined directories.
+    - LOG: Uses a single append-only file, where every save is written at the file's end.
+    - MAPPED_LOG: Same as LOG, but the file is memory-mapped, so players' loading is served from memory.""")
   public String playerInfrastructureRepositoryType = "JSON";
 
   @Comment("""
-    The name of the MongoDB's database's collection or the directory's name where the players' information
-    will be stored by the plugin.""")
+    The name of the MongoDB's database's collection, the directory's name or the log-file's name where the
+    players' information will be stored by the plugin.""")
   public String playerCollectionAndDirectoryName = "players";
 
+  @Comment("""
+    Whether the players' json-files should be indented to be human-readable. Disabling it writes compact
+    files, which are smaller and faster to write and read.""")
+  public boolean jsonPrettyPrinting = true;
+
+  @Comment("""
+    Whether every save should be flushed to disk before being considered as completed when using the
+    LOG or MAPPED_LOG infrastructure-types. Disabling it is faster, but the latest saves could be lost on a power-loss.""")
+  public boolean logSyncWrites = true;
+
+  @Comment("""
+    The milliseconds between each check for the log-file's compaction, which rewrites the file with only the
+    latest information of every player once most of it is outdated. Use 0 to disable it.""")
+  public long logCompactionIntervalMillis = 60000;
+
+  @Comment("""
+    Whether the stored players' ids should be kept in-memory at start-up, so the MongoDB isn't queried for
+    players that joined for first time. Only enable it if this is the only server using the players' collection,
+    otherwise players saved by other servers would be considered as new players.""")
+  public boolean mongoExistenceFilter = false;
+
+  @Comment("""
+    Whether the players' collection should be watched for changes made by other servers, so the cached
+    players' homes are refreshed, or the players unloaded if their information is deleted.
+    It requires the MongoDB to be a replica-set.""")
+  public boolean mongoChangeStreamEnabled = false;
+
+  @Comment("""
+    The consecutive failures to reach the MongoDB after which requests fail fast, and the players' information
+    is spooled into a local file until the database is reachable again.""")
+  public int mongoCircuitBreakerFailureThreshold = 3;
+
+  @Comment("The time in milliseconds to wait before trying to reach the MongoDB again after it became unreachable.")
+  public long mongoCircuitBreakerOpenMillis = 10000;
+
   @Comment("The mongo-db's host to connect to.")
   public String mongoHost = "localhost";
 
@@ -37,6 +37,8 @@ public final class MessagesConfigurationModel implements ConfigurationInterface
 
   public String reloadError = "<blue>[AldrHomes] <dark_gray><b>></b> <red>An error occurred during configurations reloading.";
 
+  public String playerLoadError = "<blue>[AldrHomes] <dark_gray><b>></b> <red>Your information couldn't be loaded, please try to join again.";
+
   public String playerUnknownInfo = "<blue>[AldrHomes] <dark_gray><b>></b> <red>Seems your information isn't available.";
 
   public String unknownHome = "<blue>[AldrHomes] <dark_gray><b>></b> <red>That home-point doesn't exist.";
@@ -17,24 +17,35 @@
 package io.github.aivruu.homes.persistence.infrastructure;
 
 import com.mongodb.client.MongoClient;
+import io.github.aivruu.homes.aggregate.domain.registry.AggregateRootRegistry;
 import io.github.aivruu.homes.config.application.object.ConfigurationConfigurationModel;
 import io.github.aivruu.homes.persistence.domain.InfrastructureAggregateRootRepository;
 import io.github.aivruu.homes.persistence.infrastructure.utils.MongoClientHelper;
 import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
 import io.github.aivruu.homes.player.infrastructure.json.PlayerJsonInfrastructureAggregateRootRepository;
+import io.github.aivruu.homes.player.infrastructure.log.PlayerLogInfrastructureAggregateRootRepository;
+import io.github.aivruu.homes.player.infrastructure.mongodb.PlayerMongoChangeStreamWatcher;
 import io.github.aivruu.homes.player.infrastructure.mongodb.PlayerMongoInfrastructureAggregateRootRepository;
+import net.kyori.adventure.text.logger.slf4j.ComponentLogger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
+import java.util.concurrent.Executor;
 
 public final class InfrastructureRepositoryController {
+  private final ComponentLogger logger;
   private final Path dataFolder;
   private final ConfigurationConfigurationModel configuration;
   private InfrastructureAggregateRootRepository<PlayerAggregateRoot> playerInfrastructureAggregateRootRepository;
   private InfrastructureRepositoryType playerInfrastructureRepositoryType;
+  private @Nullable PlayerMongoChangeStreamWatcher playerChangeStreamWatcher;
 
-  public InfrastructureRepositoryController(final @NotNull Path dataFolder, final @NotNull ConfigurationConfigurationModel configuration) {
+  public InfrastructureRepositoryController(
+    final @NotNull ComponentLogger logger,
+    final @NotNull Path dataFolder,
+    final @NotNull ConfigurationConfigurationModel configuration) {
+    this.logger = logger;
     this.dataFolder = dataFolder;
     this.configuration = configuration;
   }
@@ -44,6 +55,10 @@ public final class InfrastructureRepositoryController {
       this.playerInfrastructureRepositoryType = InfrastructureRepositoryType.JSON;
     } else if (this.configuration.playerInfrastructureRepositoryType.equals("MONGODB")) {
       this.playerInfrastructureRepositoryType = InfrastructureRepositoryType.MONGODB;
+    } else if (this.configuration.playerInfrastructureRepositoryType.equals("LOG")) {
+      this.playerInfrastructureRepositoryType = InfrastructureRepositoryType.LOG;
+    } else if (this.configuration.playerInfrastructureRepositoryType.equals("MAPPED_LOG")) {
+      this.playerInfrastructureRepositoryType = InfrastructureRepositoryType.MAPPED_LOG;
     } else {
       this.playerInfrastructureRepositoryType = InfrastructureRepositoryType.JSON;
     }
@@ -61,14 +76,44 @@ public final class InfrastructureRepositoryController {
         return false;
       }
     }
-    this.playerInfrastructureAggregateRootRepository = (this.playerInfrastructureRepositoryType == InfrastructureRepositoryType.JSON)
-      ? new PlayerJsonInfrastructureAggregateRootRepository(this.dataFolder.resolve(this.configuration.playerCollectionAndDirectoryName))
-      : new PlayerMongoInfrastructureAggregateRootRepository(client, this.configuration.mongoDatabase, this.configuration.playerCollectionAndDirectoryName);
+    this.playerInfrastructureAggregateRootRepository = switch (this.playerInfrastructureRepositoryType) {
+      case JSON -> new PlayerJsonInfrastructureAggregateRootRepository(this.dataFolder.resolve(this.configuration.playerCollectionAndDirectoryName), this.configuration.jsonPrettyPrinting);
+      case MONGODB -> new PlayerMongoInfrastructureAggregateRootRepository(
+        this.logger,
+        client,
+        this.configuration.mongoDatabase,
+        this.configuration.playerCollectionAndDirectoryName,
+        this.configuration.mongoExistenceFilter,
+        this.dataFolder.resolve(this.configuration.playerCollectionAndDirectoryName + "-spool.bson"),
+        this.configuration.mongoCircuitBreakerFailureThreshold,
+        this.configuration.mongoCircuitBreakerOpenMillis);
+      case LOG, MAPPED_LOG -> new PlayerLogInfrastructureAggregateRootRepository(
+        this.dataFolder.resolve(this.configuration.playerCollectionAndDirectoryName + ".log"),
+        this.configuration.logSyncWrites,
+        this.playerInfrastructureRepositoryType == InfrastructureRepositoryType.MAPPED_LOG,
+        this.configuration.logCompactionIntervalMillis);
+    };
     return this.playerInfrastructureAggregateRootRepository.start();
   }
 
+  public boolean watchPlayerChanges(
+    final @NotNull AggregateRootRegistry<PlayerAggregateRoot> playerAggregateRootRegistry,
+    final @NotNull Executor mainThreadExecutor
+  ) {
+    if (!(this.playerInfrastructureAggregateRootRepository instanceof PlayerMongoInfrastructureAggregateRootRepository mongoRepository)) {
+      return false;
+    }
+    this.playerChangeStreamWatcher = mongoRepository.changeStreamWatcher(playerAggregateRootRegistry, mainThreadExecutor);
+    this.playerChangeStreamWatcher.start();
+    return true;
+  }
+
   public void close() {
-    if (this.playerInfrastructureRepositoryType == InfrastructureRepositoryType.MONGODB) {
+    // Stopped before the repository, as it uses the repository's client.
+    if (this.playerChangeStreamWatcher != null) {
+      this.playerChangeStreamWatcher.close();
+    }
+    if (this.playerInfrastructureAggregateRootRepository != null) {
       this.playerInfrastructureAggregateRootRepository.close();
     }
   }
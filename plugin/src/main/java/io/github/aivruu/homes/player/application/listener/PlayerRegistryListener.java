@@ -16,6 +16,9 @@
 // along with this program. If not, see <https://www.gnu.org/licenses/>.
 package io.github.aivruu.homes.player.application.listener;
 
+import io.github.aivruu.homes.config.application.ConfigurationContainer;
+import io.github.aivruu.homes.config.application.object.MessagesConfigurationModel;
+import io.github.aivruu.homes.minimessage.application.MiniMessageHelper;
 import io.github.aivruu.homes.player.application.PlayerManagerService;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -28,21 +31,29 @@ import org.jetbrains.annotations.NotNull;
 
 public final class PlayerRegistryListener implements Listener {
   private final ComponentLogger logger;
+  private final ConfigurationContainer<MessagesConfigurationModel> messages;
   private final PlayerManagerService playerManagerService;
 
-  public PlayerRegistryListener(final @NotNull ComponentLogger logger, final @NotNull PlayerManagerService playerManagerService) {
+  public PlayerRegistryListener(
+    final @NotNull ComponentLogger logger,
+    final @NotNull ConfigurationContainer<MessagesConfigurationModel> messages,
+    final @NotNull PlayerManagerService playerManagerService
+  ) {
     this.logger = logger;
+    this.messages = messages;
     this.playerManagerService = playerManagerService;
   }
 
   @EventHandler
   public void onAsyncPreLogin(final @NotNull AsyncPlayerPreLoginEvent event) {
-    this.playerManagerService.loadOne(event.getUniqueId().toString());
+    if (!this.playerManagerService.loadOne(event.getUniqueId().toString())) {
+      event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, MiniMessageHelper.parse(this.messages.model().playerLoadError));
+    }
   }
 
   @EventHandler
   public void onQuit(final @NotNull PlayerQuitEvent event) {
-    if (!this.playerManagerService.unloadOne(event.getPlayer().getUniqueId().toString())) {
+    if (!this.playerManagerService.unloadOne(event.getPlayer().getUniqueId())) {
       this.logger.error(Component.text("Couldn't save this player's information.").color(NamedTextColor.YELLOW));
     }
   }
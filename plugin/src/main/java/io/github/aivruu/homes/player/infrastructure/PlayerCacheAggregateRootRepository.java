@@ -18,18 +18,35 @@ package io.github.aivruu.homes.player.infrastructure;
 
 import io.github.aivruu.homes.aggregate.domain.repository.AggregateRootRepository;
 import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
-import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class PlayerCacheAggregateRootRepository implements AggregateRootRepository<PlayerAggregateRoot> {
-  private final Object2ObjectMap<String, PlayerAggregateRoot> cache = new Object2ObjectOpenHashMap<>();
+  // Written from the async pre-login threads and read from the main-thread, so the map must be concurrent.
+  // Keyed by the players' UUIDs, which are hashed and compared through their two longs without allocations.
+  private final Map<UUID, PlayerAggregateRoot> cache = new ConcurrentHashMap<>();
+
+  private static @Nullable UUID uuidOf(final @NotNull String id) {
+    try {
+      return UUID.fromString(id);
+    } catch (final IllegalArgumentException exception) {
+      return null;
+    }
+  }
 
   @Override
   public @Nullable PlayerAggregateRoot findSync(final @NotNull String id) {
+    final UUID uuid = uuidOf(id);
+    return (uuid == null) ? null : this.cache.get(uuid);
+  }
+
+  @Override
+  public @Nullable PlayerAggregateRoot findSync(final @NotNull UUID id) {
     return this.cache.get(id);
   }
 
@@ -40,16 +57,32 @@ public final class PlayerCacheAggregateRootRepository implements AggregateRootRe
 
   @Override
   public void saveSync(final @NotNull PlayerAggregateRoot aggregateRoot) {
-    this.cache.put(aggregateRoot.id(), aggregateRoot);
+    final UUID uuid = uuidOf(aggregateRoot.id());
+    if (uuid == null) {
+      throw new IllegalArgumentException("Player aggregate-root's id must be a valid UUID: " + aggregateRoot.id());
+    }
+    this.cache.put(uuid, aggregateRoot);
   }
 
   @Override
   public boolean existsSync(final @NotNull String id) {
-    return this.cache.get(id) != null;
+    final UUID uuid = uuidOf(id);
+    return uuid != null && this.cache.containsKey(uuid);
+  }
+
+  @Override
+  public boolean existsSync(final @NotNull UUID id) {
+    return this.cache.containsKey(id);
   }
 
   @Override
   public @Nullable PlayerAggregateRoot deleteSync(final @NotNull String id) {
+    final UUID uuid = uuidOf(id);
+    return (uuid == null) ? null : this.cache.remove(uuid);
+  }
+
+  @Override
+  public @Nullable PlayerAggregateRoot deleteSync(final @NotNull UUID id) {
     return this.cache.remove(id);
   }
 
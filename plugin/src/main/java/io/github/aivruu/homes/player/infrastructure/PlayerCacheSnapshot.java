@@ -0,0 +1,125 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure;
+
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.infrastructure.log.codec.LogPlayerAggregateRootCodec;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A binary snapshot of the cached players' information, written on shutdown with their versions and the
+ * log's record-format, so players rejoining after a restart are loaded from it instead of the infrastructure.
+ * <p>
+ * The snapshot is read only once, and only for a bounded time after it was written.
+ *
+ * @since 2.0.0
+ */
+public final class PlayerCacheSnapshot {
+  private static final byte FORMAT_VERSION = 1;
+  private final Path file;
+
+  /**
+   * Creates a new {@link PlayerCacheSnapshot} for the given file.
+   *
+   * @param file the snapshot's file.
+   * @since 2.0.0
+   */
+  public PlayerCacheSnapshot(final @NotNull Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Writes the given players' information into the snapshot, replacing the previous one atomically.
+   *
+   * @param playerAggregateRoots the {@link PlayerAggregateRoot}s matching their stored information.
+   * @throws IOException if the snapshot couldn't be written.
+   * @since 2.0.0
+   */
+  public void write(final @NotNull Collection<PlayerAggregateRoot> playerAggregateRoots) throws IOException {
+    // Written aside and moved at once, so a crash during the write never leaves a truncated snapshot.
+    final Path temporaryFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+    try (final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+      output.writeByte(FORMAT_VERSION);
+      output.writeLong(System.currentTimeMillis());
+      output.writeInt(playerAggregateRoots.size());
+      for (final PlayerAggregateRoot playerAggregateRoot : playerAggregateRoots) {
+        final UUID id = UUID.fromString(playerAggregateRoot.id());
+        final byte[] payload = LogPlayerAggregateRootCodec.INSTANCE.encode(playerAggregateRoot);
+        output.writeLong(id.getMostSignificantBits());
+        output.writeLong(id.getLeastSignificantBits());
+        output.writeInt(payload.length);
+        output.write(payload);
+      }
+    }
+    Files.move(temporaryFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads and deletes the snapshot, if it was written within the given time.
+   *
+   * @param maxAgeMillis the max time in milliseconds since the snapshot was written.
+   * @return The restored {@link PlayerAggregateRoot}s, or an empty list if there's no snapshot or it's too old.
+   * @throws IOException if the snapshot is malformed or couldn't be read.
+   * @since 2.0.0
+   */
+  public @NotNull List<PlayerAggregateRoot> read(final long maxAgeMillis) throws IOException {
+    if (Files.notExists(this.file)) {
+      return List.of();
+    }
+    try {
+      final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.file));
+      if (buffer.get() != FORMAT_VERSION) {
+        throw new IOException("Unknown format-version for the cache's snapshot.");
+      }
+      // Older snapshots may miss changes made by other servers meanwhile.
+      if ((System.currentTimeMillis() - buffer.getLong()) > maxAgeMillis) {
+        return List.of();
+      }
+      final int size = buffer.getInt();
+      final List<PlayerAggregateRoot> playerAggregateRoots = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        final String id = new UUID(buffer.getLong(), buffer.getLong()).toString();
+        final int payloadLength = buffer.getInt();
+        final ByteBuffer payload = buffer.slice(buffer.position(), payloadLength);
+        buffer.position(buffer.position() + payloadLength);
+        final PlayerAggregateRoot playerAggregateRoot = LogPlayerAggregateRootCodec.INSTANCE.decode(id, payload);
+        // It matched the stored information when written, so next mutations can be applied to it.
+        playerAggregateRoot.drainMutations();
+        playerAggregateRoots.add(playerAggregateRoot);
+      }
+      return playerAggregateRoots;
+    } catch (final BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException exception) {
+      throw new IOException("Malformed cache's snapshot.", exception);
+    } finally {
+      // Players may change on other servers after this start-up, so the snapshot is never read twice.
+      Files.deleteIfExists(this.file);
+    }
+  }
+}
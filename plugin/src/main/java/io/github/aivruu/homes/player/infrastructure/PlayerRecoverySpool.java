@@ -0,0 +1,215 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure;
+
+import io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository;
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
+import io.github.aivruu.homes.persistence.infrastructure.utils.AggregateRootRecordLog;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import io.github.aivruu.homes.player.infrastructure.log.codec.LogPlayerAggregateRootCodec;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A spool for the players' information that couldn't be saved before the shutdown, kept with the log's
+ * record-format until it's saved into the infrastructure on next start-up.
+ * <p>
+ * Spooled information is only written over the stored one it was based on, so changes saved by other
+ * servers meanwhile are never overwritten, and are reported as conflicts instead.
+ *
+ * @since 2.0.0
+ */
+public final class PlayerRecoverySpool {
+  private final Path file;
+
+  /**
+   * Creates a new {@link PlayerRecoverySpool} for the given file.
+   *
+   * @param file the spool's file.
+   * @since 2.0.0
+   */
+  public PlayerRecoverySpool(final @NotNull Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Returns whether there's no spooled information waiting to be saved.
+   *
+   * @return Whether the spool's file doesn't exist.
+   * @since 2.0.0
+   */
+  public boolean isEmpty() {
+    return Files.notExists(this.file);
+  }
+
+  /**
+   * Appends the given players' information to the spool, replacing any spooled information for the same players.
+   *
+   * @param playerAggregateRoots the {@link PlayerAggregateRoot}s that couldn't be saved.
+   * @throws IOException if the spool couldn't be written.
+   * @since 2.0.0
+   */
+  public void spool(final @NotNull Collection<PlayerAggregateRoot> playerAggregateRoots) throws IOException {
+    final AggregateRootRecordLog recordLog = new AggregateRootRecordLog(this.file, true, false);
+    recordLog.open();
+    try {
+      for (final PlayerAggregateRoot playerAggregateRoot : playerAggregateRoots) {
+        recordLog.put(playerAggregateRoot.id(), LogPlayerAggregateRootCodec.INSTANCE.encode(playerAggregateRoot));
+      }
+    } finally {
+      recordLog.close();
+    }
+  }
+
+  /**
+   * Saves the spooled information into the given repository, removing it from the spool once saved or
+   * once it conflicts with the stored information. Information that couldn't be saved is kept for the
+   * next replay.
+   *
+   * @param repository the {@link AsyncAggregateRootRepository} to save the information into.
+   * @return The {@link Replay} with the recovered and the conflicting players.
+   * @throws IOException if the spool couldn't be read or updated.
+   * @since 2.0.0
+   */
+  public @NotNull Replay replay(final @NotNull AsyncAggregateRootRepository<PlayerAggregateRoot> repository) throws IOException {
+    if (this.isEmpty()) {
+      return new Replay(0, List.of());
+    }
+    final AggregateRootRecordLog recordLog = new AggregateRootRecordLog(this.file, true, false);
+    recordLog.open();
+    int recoveredPlayers = 0;
+    final List<String> conflictingPlayerIds = new ArrayList<>();
+    boolean pending = false;
+    try {
+      for (final String id : recordLog.ids()) {
+        final ByteBuffer payload = recordLog.read(id);
+        if (payload == null) continue;
+        final AggregateRootSaveResult result = this.recover(repository, LogPlayerAggregateRootCodec.INSTANCE.decode(id, payload));
+        if (result.wasError()) {
+          // Kept for the next start-up.
+          pending = true;
+          continue;
+        }
+        recordLog.delete(id);
+        if (result.wasSaved()) {
+          recoveredPlayers++;
+        } else {
+          conflictingPlayerIds.add(id);
+        }
+      }
+    } finally {
+      recordLog.close();
+    }
+    if (!pending) {
+      Files.deleteIfExists(this.file);
+    }
+    return new Replay(recoveredPlayers, conflictingPlayerIds);
+  }
+
+  private @NotNull AggregateRootSaveResult recover(
+    final @NotNull AsyncAggregateRootRepository<PlayerAggregateRoot> repository,
+    final @NotNull PlayerAggregateRoot spooledPlayerAggregateRoot
+  ) {
+    try {
+      final PlayerAggregateRoot storedPlayerAggregateRoot = repository.findAsync(spooledPlayerAggregateRoot.id()).join();
+      if (storedPlayerAggregateRoot != null) {
+        // Versions are plain counters, so another server saving once over the same stored version reaches the
+        // same one, only the homes tell whether the stored state is the spooled one, saved after the spooling.
+        if (storedPlayerAggregateRoot.version() == spooledPlayerAggregateRoot.version()) {
+          return sameHomes(storedPlayerAggregateRoot.homes(), spooledPlayerAggregateRoot.homes())
+            ? AggregateRootSaveResult.saved()
+            : AggregateRootSaveResult.conflict();
+        }
+        // Another server saved a newer state meanwhile.
+        if (storedPlayerAggregateRoot.version() > spooledPlayerAggregateRoot.version()) {
+          return AggregateRootSaveResult.conflict();
+        }
+      }
+      final PlayerAggregateRoot playerAggregateRoot = (storedPlayerAggregateRoot == null)
+        ? new PlayerAggregateRoot(new PlayerModelEntity(spooledPlayerAggregateRoot.id(), new HomeModelEntity[0]))
+        : storedPlayerAggregateRoot;
+      // Written over the stored state, so its version is still the expected one.
+      playerAggregateRoot.restoreHomes(spooledPlayerAggregateRoot.homes(), spooledPlayerAggregateRoot.version());
+      return repository.saveAsync(playerAggregateRoot).join();
+    } catch (final CompletionException exception) {
+      return AggregateRootSaveResult.error();
+    }
+  }
+
+  // Homes are compared by their id regardless of their order, which isn't kept by every infrastructure.
+  private static boolean sameHomes(final @NotNull HomeModelEntity[] homes, final @NotNull HomeModelEntity[] otherHomes) {
+    final Map<String, HomePositionValueObject> positions = positionsOf(homes);
+    final Map<String, HomePositionValueObject> otherPositions = positionsOf(otherHomes);
+    if (positions.size() != otherPositions.size()) {
+      return false;
+    }
+    for (final Map.Entry<String, HomePositionValueObject> entry : positions.entrySet()) {
+      final HomePositionValueObject otherPosition = otherPositions.get(entry.getKey());
+      if (otherPosition == null || !samePosition(entry.getValue(), otherPosition)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static @NotNull Map<String, HomePositionValueObject> positionsOf(final @NotNull HomeModelEntity[] homes) {
+    final Map<String, HomePositionValueObject> positions = new HashMap<>(homes.length);
+    for (final HomeModelEntity home : homes) {
+      if (home != null) {
+        positions.put(home.id(), home.position());
+      }
+    }
+    return positions;
+  }
+
+  // Worlds are compared by name, as they may not be loaded while the spool is replayed.
+  private static boolean samePosition(final @NotNull HomePositionValueObject position, final @NotNull HomePositionValueObject otherPosition) {
+    return Objects.equals(worldNameOf(position), worldNameOf(otherPosition))
+      && position.x() == otherPosition.x()
+      && position.y() == otherPosition.y()
+      && position.z() == otherPosition.z();
+  }
+
+  private static @Nullable String worldNameOf(final @NotNull HomePositionValueObject position) {
+    return (position.world() == null) ? null : position.world().getName();
+  }
+
+  /**
+   * The outcome of a {@link #replay(AsyncAggregateRootRepository)}.
+   *
+   * @param recoveredPlayers the amount of players whose spooled information was saved.
+   * @param conflictingPlayerIds the ids of the players whose spooled information was discarded, as other
+   *     servers saved different information for them meanwhile.
+   * @since 2.0.0
+   */
+  public record Replay(int recoveredPlayers, @NotNull List<String> conflictingPlayerIds) {}
+}
@@ -0,0 +1,115 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure;
+
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class PlayerCacheSnapshotTest {
+  private static final long MAX_AGE_MILLIS = 60_000;
+  @TempDir
+  Path directory;
+
+  @Test
+  void playersAreRestoredWithTheirVersionsAndHomes() throws IOException {
+    final Path file = this.directory.resolve("cache.snapshot");
+    final PlayerCacheSnapshot snapshot = new PlayerCacheSnapshot(file);
+    final String firstId = UUID.randomUUID().toString();
+    final String secondId = UUID.randomUUID().toString();
+    snapshot.write(List.of(
+      player(firstId, 3, home("home", 64), home("farm", 70)),
+      player(secondId, 0)));
+
+    final List<PlayerAggregateRoot> playerAggregateRoots = snapshot.read(MAX_AGE_MILLIS);
+    assertEquals(2, playerAggregateRoots.size());
+    final PlayerAggregateRoot first = playerAggregateRoots.get(0);
+    assertEquals(firstId, first.id());
+    assertEquals(3, first.version());
+    assertNotNull(first.home("home"));
+    assertEquals(64, first.home("home").position().y());
+    assertEquals(70, first.home("farm").position().y());
+    assertNull(first.home("mine"));
+    final PlayerAggregateRoot second = playerAggregateRoots.get(1);
+    assertEquals(secondId, second.id());
+    assertEquals(0, second.version());
+    // Restored players match their stored information, so only their next mutations must be written.
+    assertNotNull(first.drainMutations());
+    assertNotNull(second.drainMutations());
+  }
+
+  @Test
+  void snapshotIsReadOnlyOnce() throws IOException {
+    final Path file = this.directory.resolve("cache.snapshot");
+    final PlayerCacheSnapshot snapshot = new PlayerCacheSnapshot(file);
+    snapshot.write(List.of(player(UUID.randomUUID().toString(), 1)));
+
+    assertEquals(1, snapshot.read(MAX_AGE_MILLIS).size());
+    assertFalse(Files.exists(file));
+    assertTrue(snapshot.read(MAX_AGE_MILLIS).isEmpty());
+  }
+
+  @Test
+  void outdatedSnapshotIsIgnored() throws IOException, InterruptedException {
+    final Path file = this.directory.resolve("cache.snapshot");
+    final PlayerCacheSnapshot snapshot = new PlayerCacheSnapshot(file);
+    snapshot.write(List.of(player(UUID.randomUUID().toString(), 1)));
+    Thread.sleep(10);
+
+    assertTrue(snapshot.read(0).isEmpty());
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  void malformedSnapshotFailsAndIsDeleted() throws IOException {
+    final Path file = this.directory.resolve("cache.snapshot");
+    final PlayerCacheSnapshot snapshot = new PlayerCacheSnapshot(file);
+    snapshot.write(List.of(player(UUID.randomUUID().toString(), 1, home("home", 64))));
+    // Truncated in the middle of the player's information.
+    final byte[] content = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(content, content.length - 4));
+
+    assertThrows(IOException.class, () -> snapshot.read(MAX_AGE_MILLIS));
+    assertFalse(Files.exists(file));
+  }
+
+  private static @NotNull PlayerAggregateRoot player(final @NotNull String id, final long version, final @NotNull HomeModelEntity... homes) {
+    return new PlayerAggregateRoot(new PlayerModelEntity(id, homes), version);
+  }
+
+  private static @NotNull HomeModelEntity home(final @NotNull String id, final int y) {
+    return new HomeModelEntity(id, new HomePositionValueObject(null, 1, y, 2));
+  }
+}
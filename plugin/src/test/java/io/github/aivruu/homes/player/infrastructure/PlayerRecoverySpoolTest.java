@@ -0,0 +1,142 @@
+// This file is part of homes, licensed under the GNU License.
+//
+// Copyright (c) 2024 aivruu
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program. If not, see <https://www.gnu.org/licenses/>.
+package io.github.aivruu.homes.player.infrastructure;
+
+import io.github.aivruu.homes.aggregate.domain.repository.AsyncAggregateRootRepository;
+import io.github.aivruu.homes.home.domain.HomeModelEntity;
+import io.github.aivruu.homes.home.domain.position.HomePositionValueObject;
+import io.github.aivruu.homes.player.domain.PlayerAggregateRoot;
+import io.github.aivruu.homes.player.domain.PlayerModelEntity;
+import io.github.aivruu.homes.result.domain.AggregateRootSaveResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class PlayerRecoverySpoolTest {
+  @TempDir
+  Path directory;
+  private final StoredPlayers storedPlayers = new StoredPlayers();
+
+  @Test
+  void spooledStateAlreadyStoredIsRecoveredWithoutWriting() throws IOException {
+    final String id = UUID.randomUUID().toString();
+    final PlayerAggregateRoot storedPlayerAggregateRoot = player(id, 2, home("home", 64));
+    this.storedPlayers.playerAggregateRoots.put(id, storedPlayerAggregateRoot);
+    final PlayerRecoverySpool spool = this.spool(player(id, 2, home("home", 64)));
+
+    final PlayerRecoverySpool.Replay replay = spool.replay(this.storedPlayers);
+    assertEquals(1, replay.recoveredPlayers());
+    assertTrue(replay.conflictingPlayerIds().isEmpty());
+    assertEquals(0, this.storedPlayers.saves);
+    assertTrue(spool.isEmpty());
+  }
+
+  @Test
+  void anotherStateWithTheSameVersionIsAConflict() throws IOException {
+    final String id = UUID.randomUUID().toString();
+    // Saved by another server over the same stored version as the spooled state.
+    final PlayerAggregateRoot storedPlayerAggregateRoot = player(id, 2, home("home", 70));
+    this.storedPlayers.playerAggregateRoots.put(id, storedPlayerAggregateRoot);
+    final PlayerRecoverySpool spool = this.spool(player(id, 2, home("home", 64)));
+
+    final PlayerRecoverySpool.Replay replay = spool.replay(this.storedPlayers);
+    assertEquals(0, replay.recoveredPlayers());
+    assertEquals(List.of(id), replay.conflictingPlayerIds());
+    assertEquals(0, this.storedPlayers.saves);
+    assertSame(storedPlayerAggregateRoot, this.storedPlayers.playerAggregateRoots.get(id));
+    assertTrue(spool.isEmpty());
+  }
+
+  @Test
+  void spooledStateIsWrittenOverAnOlderOne() throws IOException {
+    final String id = UUID.randomUUID().toString();
+    this.storedPlayers.playerAggregateRoots.put(id, player(id, 1));
+    final PlayerRecoverySpool spool = this.spool(player(id, 2, home("home", 64)));
+
+    final PlayerRecoverySpool.Replay replay = spool.replay(this.storedPlayers);
+    assertEquals(1, replay.recoveredPlayers());
+    assertEquals(1, this.storedPlayers.saves);
+    final PlayerAggregateRoot storedPlayerAggregateRoot = this.storedPlayers.playerAggregateRoots.get(id);
+    assertEquals(2, storedPlayerAggregateRoot.version());
+    assertNotNull(storedPlayerAggregateRoot.home("home"));
+    assertTrue(spool.isEmpty());
+  }
+
+  private @NotNull PlayerRecoverySpool spool(final @NotNull PlayerAggregateRoot playerAggregateRoot) throws IOException {
+    final PlayerRecoverySpool spool = new PlayerRecoverySpool(this.directory.resolve("recovery.log"));
+    spool.spool(List.of(playerAggregateRoot));
+    return spool;
+  }
+
+  private static @NotNull PlayerAggregateRoot player(final @NotNull String id, final long version, final @NotNull HomeModelEntity... homes) {
+    return new PlayerAggregateRoot(new PlayerModelEntity(id, homes), version);
+  }
+
+  private static @NotNull HomeModelEntity home(final @NotNull String id, final int y) {
+    return new HomeModelEntity(id, new HomePositionValueObject(null, 1, y, 2));
+  }
+
+  private static final class StoredPlayers implements AsyncAggregateRootRepository<PlayerAggregateRoot> {
+    private final Map<String, PlayerAggregateRoot> playerAggregateRoots = new HashMap<>();
+    private int saves;
+
+    @Override
+    public @NotNull CompletableFuture<@Nullable PlayerAggregateRoot> findAsync(final @NotNull String id) {
+      // Decoded from the stored information, so it's a new aggregate-root on each look-up.
+      final PlayerAggregateRoot storedPlayerAggregateRoot = this.playerAggregateRoots.get(id);
+      return CompletableFuture.completedFuture((storedPlayerAggregateRoot == null)
+        ? null
+        : player(id, storedPlayerAggregateRoot.version(), storedPlayerAggregateRoot.homes().clone()));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Boolean> existsAsync(final @NotNull String id) {
+      return CompletableFuture.completedFuture(this.playerAggregateRoots.containsKey(id));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<AggregateRootSaveResult> saveAsync(final @NotNull PlayerAggregateRoot aggregateRoot) {
+      this.saves++;
+      final PlayerAggregateRoot.Saving saving = aggregateRoot.beginSaving();
+      final PlayerAggregateRoot storedPlayerAggregateRoot = this.playerAggregateRoots.get(aggregateRoot.id());
+      if (storedPlayerAggregateRoot != null && storedPlayerAggregateRoot.version() != saving.expectedVersion()) {
+        return CompletableFuture.completedFuture(AggregateRootSaveResult.conflict());
+      }
+      this.playerAggregateRoots.put(aggregateRoot.id(), saving.state());
+      return CompletableFuture.completedFuture(AggregateRootSaveResult.saved());
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Boolean> deleteAsync(final @NotNull String id) {
+      return CompletableFuture.completedFuture(this.playerAggregateRoots.remove(id) != null);
+    }
+  }
+}
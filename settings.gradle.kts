@@ -2,10 +2,10 @@
 
 rootProject.name = "homes"
 
-sequenceOf("api", "infrastructure", "mongodb", "json", "plugin").forEach {
+sequenceOf("api", "infrastructure", "mongodb", "json", "log", "plugin").forEach {
   val kerbalProject = ":${rootProject.name}-$it"
   include(kerbalProject)
-  if (it.equals("mongodb") || it.equals("json")) {
+  if (it.equals("mongodb") || it.equals("json") || it.equals("log")) {
     project(kerbalProject).projectDir = file("infrastructure/$it")
   } else {
     project(kerbalProject).projectDir = file(it)